@@ -0,0 +1,38 @@
+package dk.mosberg.generator.gradle;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.provider.ListProperty;
+import org.gradle.workers.WorkAction;
+import org.gradle.workers.WorkParameters;
+
+/**
+ * Calls {@code Generator.execute} in the worker's class loader. The generator classes are not
+ * visible to build logic at compile time (they are built by the same build), hence reflection.
+ */
+public abstract class GenerateAction implements WorkAction<GenerateAction.Parameters> {
+
+    public interface Parameters extends WorkParameters {
+        ListProperty<String> getArgs();
+    }
+
+    @Override
+    public void execute() {
+        String[] args = getParameters().getArgs().get().toArray(new String[0]);
+        int exitCode;
+        try {
+            Class<?> generator = Class.forName("dk.mosberg.generator.Generator");
+            Method run = generator.getMethod("execute", String[].class);
+            exitCode = (Integer) run.invoke(null, (Object) args);
+        } catch (InvocationTargetException e) {
+            throw new GradleException("Generator failed: " + e.getCause().getMessage(),
+                    e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new GradleException("Generator not found on the worker classpath", e);
+        }
+        if (exitCode != 0)
+            throw new GradleException("Generator failed (exit code " + exitCode + ")");
+    }
+}
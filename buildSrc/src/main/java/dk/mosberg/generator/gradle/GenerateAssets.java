@@ -0,0 +1,106 @@
+package dk.mosberg.generator.gradle;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import javax.inject.Inject;
+
+import org.gradle.api.DefaultTask;
+import org.gradle.api.file.ConfigurableFileCollection;
+import org.gradle.api.file.DirectoryProperty;
+import org.gradle.api.file.FileType;
+import org.gradle.api.provider.Property;
+import org.gradle.api.tasks.CacheableTask;
+import org.gradle.api.tasks.Classpath;
+import org.gradle.api.tasks.IgnoreEmptyDirectories;
+import org.gradle.api.tasks.Input;
+import org.gradle.api.tasks.InputDirectory;
+import org.gradle.api.tasks.Optional;
+import org.gradle.api.tasks.OutputDirectory;
+import org.gradle.api.tasks.PathSensitive;
+import org.gradle.api.tasks.PathSensitivity;
+import org.gradle.api.tasks.TaskAction;
+import org.gradle.api.tasks.options.Option;
+import org.gradle.work.FileChange;
+import org.gradle.work.Incremental;
+import org.gradle.work.InputChanges;
+import org.gradle.workers.WorkerExecutor;
+
+/**
+ * Runs the generator inside the Gradle daemon through the Worker API, with the input and output
+ * dirs declared so an unchanged build is up to date (or restored from the build cache) without
+ * starting the generator at all.
+ * <p>
+ * When Gradle can run the task incrementally it passes the changed input files to the generator
+ * (--changed), which then trusts its manifest for every material whose definition and texture
+ * did not change instead of rehashing them. Otherwise (no history, changed outputs, a new
+ * generator classpath) it rehashes every material against whatever manifest the output still
+ * holds. The manifest fingerprint covers the generator code, so no --full is needed for new
+ * generator code to reach the output.
+ */
+@CacheableTask
+public abstract class GenerateAssets extends DefaultTask {
+
+    @Input
+    public abstract Property<String> getModId();
+
+    @Input
+    public abstract Property<String> getLang();
+
+    /** Extra generator flags, split on whitespace (e.g. --args="--threads 4 --minify"). */
+    @Input
+    @Optional
+    @Option(option = "args", description = "Extra generator arguments")
+    public abstract Property<String> getGeneratorArgs();
+
+    @Incremental
+    @InputDirectory
+    @IgnoreEmptyDirectories
+    @PathSensitive(PathSensitivity.RELATIVE)
+    public abstract DirectoryProperty getInputDir();
+
+    @OutputDirectory
+    public abstract DirectoryProperty getOutputDir();
+
+    /** The generator and its runtime dependencies, loaded in an isolated class loader. */
+    @Classpath
+    public abstract ConfigurableFileCollection getGeneratorClasspath();
+
+    @Inject
+    protected abstract WorkerExecutor getWorkerExecutor();
+
+    @TaskAction
+    public void generate(InputChanges inputChanges) throws IOException {
+        List<String> args = new ArrayList<>(List.of(
+                "--modid", getModId().get(),
+                "--input", getInputDir().get().getAsFile().getAbsolutePath(),
+                "--output", getOutputDir().get().getAsFile().getAbsolutePath(),
+                "--lang", getLang().get()));
+        if (getGeneratorArgs().isPresent()) {
+            for (String arg : getGeneratorArgs().get().trim().split("\\s+")) {
+                if (!arg.isEmpty())
+                    args.add(arg);
+            }
+        }
+
+        if (inputChanges.isIncremental()) {
+            List<String> changed = new ArrayList<>();
+            for (FileChange change : inputChanges.getFileChanges(getInputDir())) {
+                if (change.getFileType() != FileType.DIRECTORY)
+                    changed.add(change.getNormalizedPath());
+            }
+            File list = new File(getTemporaryDir(), "changed.txt");
+            Files.write(list.toPath(), changed, StandardCharsets.UTF_8);
+            args.add("--changed");
+            args.add(list.getAbsolutePath());
+            getLogger().info("Incremental generation: {} changed input files", changed.size());
+        }
+
+        getWorkerExecutor()
+                .classLoaderIsolation(spec -> spec.getClasspath().from(getGeneratorClasspath()))
+                .submit(GenerateAction.class, parameters -> parameters.getArgs().set(args));
+    }
+}
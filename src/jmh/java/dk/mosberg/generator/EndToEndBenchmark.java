@@ -0,0 +1,66 @@
+package dk.mosberg.generator;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Whole generator runs over a synthetic corpus, minus JVM startup. {@code full} is a forced
+ * regeneration with a cold validator and base-texture cache (every file is rebuilt and compared
+ * with what the previous iteration wrote); {@code incremental} is a rerun where the manifest says
+ * nothing changed.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+public class EndToEndBenchmark {
+
+    @Param({"100", "1000"})
+    public int materials;
+
+    @Param({"1", "4"})
+    public int threads;
+
+    private GeneratorConfig config;
+
+    @Setup
+    public void setup() throws Exception {
+        Path input = SyntheticCorpus.create(materials);
+        Path output = Files.createTempDirectory("generator-bench-out-");
+        config = GeneratorConfig.fromArgs(new String[] {"--modid", "bench", "--input",
+                input.toString(), "--output", output.toString(), "--threads",
+                Integer.toString(threads)});
+        full();
+    }
+
+    @Benchmark
+    public void full() throws Exception {
+        Generator.run(config, validator(), BuildManifest.load(config.outputDir()),
+                new BaseTextureCache(), true);
+    }
+
+    @Benchmark
+    public void incremental() throws Exception {
+        Generator.run(config, validator(), BuildManifest.load(config.outputDir()),
+                new BaseTextureCache(), false);
+    }
+
+    private SchemaValidator validator() {
+        return new SchemaValidator(config.inputDir().resolve("schemas"), config.strict());
+    }
+}
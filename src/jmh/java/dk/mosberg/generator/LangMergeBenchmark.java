@@ -0,0 +1,77 @@
+package dk.mosberg.generator;
+
+import com.google.gson.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Collecting one lang entry per material and rendering the merged file, starting either empty or
+ * from an existing lang file that already holds every key.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class LangMergeBenchmark {
+
+    @Param({"100", "5000"})
+    public int entries;
+
+    private List<Map<String, String>> additions;
+    private Path outputRoot;
+
+    @Setup
+    public void setup() throws Exception {
+        additions = new ArrayList<>(entries);
+        JsonObject existing = new JsonObject();
+        for (int i = 0; i < entries; i++) {
+            String key = "block.bench.bench_" + i;
+            additions.add(Map.of(key, "Bench Material " + i));
+            existing.addProperty(key, "Bench Material " + i);
+        }
+
+        outputRoot = Files.createTempDirectory("generator-bench-lang-");
+        Path lang = outputRoot.resolve(AssetsPaths.lang("bench", "en_us"));
+        FileUtils.ensureParent(lang);
+        Files.writeString(lang, FileUtils.PRETTY_GSON.toJson(existing), StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public String mergeFresh() {
+        return merge(new LangAccumulator(null));
+    }
+
+    @Benchmark
+    public String mergeIntoExisting() {
+        return merge(new LangAccumulator(outputRoot));
+    }
+
+    private String merge(LangAccumulator lang) {
+        for (Map<String, String> entry : additions)
+            lang.add("bench", "en_us", entry);
+        StringBuilder out = new StringBuilder();
+        for (JsonObject json : lang.toJson().values())
+            out.append(FileUtils.PRETTY_GSON.toJson(json)).append('\n');
+        return out.toString();
+    }
+}
@@ -0,0 +1,83 @@
+package dk.mosberg.generator;
+
+import com.google.gson.Gson;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The JSON files of one block (blockstate, block model, item model) and one item model, turned
+ * into bytes the old way (Gson tree, pretty-printed) and from precompiled byte templates, pretty
+ * and minified.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class ModelJsonBenchmark {
+
+    private final JsonTemplate[] pretty = templates(FileUtils.PRETTY_GSON);
+    private final JsonTemplate[] minified = templates(FileUtils.GSON);
+    private int next;
+
+    @Benchmark
+    public void blockAssetsTree(Blackhole bh) {
+        String id = "bench_" + (next++ & 1023);
+        bh.consume(bytes(MinecraftFormatUtils.singletonBlockstate("bench", "block/" + id)));
+        bh.consume(bytes(MinecraftFormatUtils.cubeAllBlockModel("bench", id)));
+        bh.consume(bytes(MinecraftFormatUtils.blockItemModel("bench", id)));
+    }
+
+    @Benchmark
+    public void blockAssetsTemplate(Blackhole bh) {
+        render(pretty, bh);
+    }
+
+    @Benchmark
+    public void blockAssetsMinified(Blackhole bh) {
+        render(minified, bh);
+    }
+
+    @Benchmark
+    public byte[] itemModelTree() {
+        return bytes(MinecraftFormatUtils.generatedItemModel("bench", "bench_" + (next++ & 1023)));
+    }
+
+    @Benchmark
+    public byte[] itemModelTemplate() {
+        return pretty[3].render("bench_" + (next++ & 1023));
+    }
+
+    private void render(JsonTemplate[] templates, Blackhole bh) {
+        String id = "bench_" + (next++ & 1023);
+        for (int i = 0; i < 3; i++)
+            bh.consume(templates[i].render(id));
+    }
+
+    private static JsonTemplate[] templates(Gson gson) {
+        String id = JsonTemplate.SLOT;
+        return new JsonTemplate[] {
+                JsonTemplate.compile(MinecraftFormatUtils.singletonBlockstate("bench", "block/" + id),
+                        gson),
+                JsonTemplate.compile(MinecraftFormatUtils.cubeAllBlockModel("bench", id), gson),
+                JsonTemplate.compile(MinecraftFormatUtils.blockItemModel("bench", id), gson),
+                JsonTemplate.compile(MinecraftFormatUtils.generatedItemModel("bench", id), gson)};
+    }
+
+    private static byte[] bytes(Object json) {
+        return (FileUtils.PRETTY_GSON.toJson(json) + "\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,102 @@
+package dk.mosberg.generator;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Texture work per image at vanilla (16x), HD (128x) and very large (512x) sizes: the three
+ * recolor paths, ramp indexing, and PNG encoding of a few-color and a full-color image.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class RecolorBenchmark {
+
+    @Param({"16", "128", "512"})
+    public int size;
+
+    private BufferedImage base;
+    private int[] src;
+    private int[] noise;
+    private int[] dst;
+    private PaletteMap palette;
+    private ColorRamp baseRamp;
+    private ColorRamp targetRamp;
+    private RampIndexedTexture indexed;
+    private int[] recolored;
+    private PngEncoder png;
+
+    @Setup
+    public void setup() throws Exception {
+        Path input = SyntheticCorpus.create(0);
+        SchemaValidator validator = new SchemaValidator(input.resolve("schemas"), true);
+        palette = PaletteMap.loadAll(input, validator).get("base_glass");
+        var ramps = ColorRamp.loadAll(input, validator);
+        baseRamp = ramps.get("base_wood");
+        targetRamp = ramps.get("base_metal");
+
+        // Ramp colors with some fully transparent pixels, like a typical texture.
+        Random random = new Random(42);
+        base = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        src = TextureRecolorer.argbData(base);
+        noise = new int[size * size];
+        for (int i = 0; i < src.length; i++) {
+            int rgb = baseRamp.colors()[random.nextInt(baseRamp.size())];
+            src[i] = random.nextInt(8) == 0 ? 0 : 0xFF000000 | rgb;
+            noise[i] = 0xFF000000 | random.nextInt();
+        }
+        dst = new int[src.length];
+        indexed = RampIndexedTexture.build(base, baseRamp);
+        recolored = TextureRecolorer.readArgb(indexed.recolor(targetRamp)).clone();
+        png = PngEncoder.defaults();
+    }
+
+    @Benchmark
+    public int[] multiply() {
+        TextureRecolorer.recolorMultiply(src, dst, src.length, 0xFF8040C0);
+        return dst;
+    }
+
+    @Benchmark
+    public int[] paletteMap() {
+        palette.apply(src, dst, src.length);
+        return dst;
+    }
+
+    @Benchmark
+    public RampIndexedTexture rampIndex() {
+        return RampIndexedTexture.build(base, baseRamp);
+    }
+
+    @Benchmark
+    public BufferedImage rampRecolor() {
+        return indexed.recolor(targetRamp);
+    }
+
+    @Benchmark
+    public byte[] encodeIndexedPng() throws Exception {
+        return png.encode(size, size, recolored);
+    }
+
+    @Benchmark
+    public byte[] encodeTruecolorPng() throws Exception {
+        return png.encode(size, size, noise);
+    }
+}
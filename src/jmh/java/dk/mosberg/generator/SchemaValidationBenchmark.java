@@ -0,0 +1,61 @@
+package dk.mosberg.generator;
+
+import com.google.gson.JsonElement;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Validation of one material of each shape against material.schema.json, with the schema already
+ * compiled, plus the cost of loading and compiling the schema from scratch.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+public class SchemaValidationBenchmark {
+
+    private Path schemaDir;
+    private Path schema;
+    private SchemaValidator validator;
+    private JsonElement[] materials;
+
+    @Setup
+    public void setup() {
+        schemaDir = SyntheticCorpus.resources().resolve("schemas");
+        schema = schemaDir.resolve("material.schema.json");
+        validator = new SchemaValidator(schemaDir, true);
+        materials = new JsonElement[4];
+        for (int i = 0; i < materials.length; i++)
+            materials[i] = SyntheticCorpus.material(i);
+        for (JsonElement mat : materials) {
+            if (!validator.validate(mat, schema).isEmpty())
+                throw new IllegalStateException("Synthetic material is invalid: " + mat);
+        }
+    }
+
+    @Benchmark
+    public void validateMaterials(Blackhole bh) {
+        for (JsonElement mat : materials)
+            bh.consume(validator.validate(mat, schema));
+    }
+
+    @Benchmark
+    public Object compileAndValidate() {
+        return new SchemaValidator(schemaDir, true).validate(materials[3], schema);
+    }
+}
@@ -0,0 +1,132 @@
+package dk.mosberg.generator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Builds benchmark inputs from the bundled schemas, ramps and textures. Materials cycle through
+ * the four texture paths the generator has: plain copy, palette-map recolor, base-texture ramp
+ * recolor and an item with a texture override and a shaped recipe.
+ */
+final class SyntheticCorpus {
+
+    private SyntheticCorpus() {}
+
+    /**
+     * The bundled resources dir; the benchmark JVMs run from the project dir unless
+     * {@code -Dgenerator.resources} says otherwise.
+     */
+    static Path resources() {
+        return Paths.get(System.getProperty("generator.resources", "src/main/resources"))
+                .toAbsolutePath();
+    }
+
+    /**
+     * Creates a fresh input dir with {@code count} materials under a temp dir.
+     */
+    static Path create(int count) throws Exception {
+        Path res = resources();
+        Path input = Files.createTempDirectory("generator-bench-");
+        copyTree(res.resolve("schemas"), input.resolve("schemas"));
+        copyTree(res.resolve("ramps"), input.resolve("ramps"));
+        copyTree(res.resolve("textures"), input.resolve("textures"));
+
+        write(input.resolve("palettes/base_glass.json"), """
+                { "schema": "palette-map", "id": "base_glass",
+                  "map": [["daf0f4", "c04040"], ["a8d0d9", "902020"]],
+                  "post": { "contrast": 1.1, "saturation": 0.8 } }
+                """);
+
+        Path plank = res.resolve("textures/material/woodplank/oak_planks.png");
+        Path glass = res.resolve("textures/material/glass/glass.png");
+        for (int i = 0; i < count; i++) {
+            JsonObject mat = material(i);
+            String id = mat.get("id").getAsString();
+            String category = mat.get("category").getAsString();
+            if (i % 4 == 0 || i % 4 == 1) {
+                Path texture = input.resolve("textures/material/" + category + "/" + id + ".png");
+                Files.copy(i % 4 == 0 ? plank : glass, texture);
+            }
+            write(input.resolve("materials/" + id + ".json"), FileUtils.PRETTY_GSON.toJson(mat));
+        }
+        return input;
+    }
+
+    static JsonObject material(int i) {
+        String id = "bench_" + i;
+        JsonObject mat = new JsonObject();
+        mat.addProperty("schema", "material");
+        mat.addProperty("id", id);
+        mat.addProperty("name", "Bench Material " + i);
+
+        switch (i % 4) {
+            case 0 -> {
+                mat.addProperty("category", "woodplank");
+                mat.addProperty("palette", "base_woodplank");
+            }
+            case 1 -> {
+                mat.addProperty("category", "glass");
+                mat.addProperty("palette", "base_glass");
+            }
+            case 2 -> {
+                mat.addProperty("category", "woodplank");
+                mat.addProperty("palette", "base_metal");
+                JsonObject props = new JsonObject();
+                props.addProperty("base_texture", "textures/material/woodplank/oak_planks.png");
+                props.addProperty("base_ramp", "base_wood");
+                mat.add("properties", props);
+            }
+            default -> {
+                mat.addProperty("category", "metalingot");
+                mat.addProperty("palette", "none");
+                JsonObject overrides = new JsonObject();
+                overrides.addProperty("item", "textures/material/metalingot/iron_ingot.png");
+                mat.add("texture_overrides", overrides);
+                mat.add("recipe", shapedRecipe(id));
+            }
+        }
+        return mat;
+    }
+
+    private static JsonObject shapedRecipe(String id) {
+        JsonArray pattern = new JsonArray();
+        pattern.add("##");
+        pattern.add("# ");
+        JsonObject stick = new JsonObject();
+        stick.addProperty("item", "minecraft:stick");
+        JsonObject key = new JsonObject();
+        key.add("#", stick);
+        JsonObject result = new JsonObject();
+        result.addProperty("item", "bench:" + id);
+        result.addProperty("count", 3);
+
+        JsonObject recipe = new JsonObject();
+        recipe.addProperty("type", "minecraft:crafting_shaped");
+        recipe.add("pattern", pattern);
+        recipe.add("key", key);
+        recipe.add("result", result);
+        return recipe;
+    }
+
+    private static void write(Path file, String content) throws Exception {
+        FileUtils.ensureParent(file);
+        Files.writeString(file, content, StandardCharsets.UTF_8);
+    }
+
+    private static void copyTree(Path from, Path to) throws Exception {
+        try (var stream = Files.walk(from)) {
+            for (Path p : stream.toList()) {
+                Path target = to.resolve(from.relativize(p).toString());
+                if (Files.isDirectory(p))
+                    Files.createDirectories(target);
+                else
+                    Files.copy(p, target);
+            }
+        }
+    }
+}
@@ -0,0 +1,13 @@
+@rem Runs the generator from the shaded jar with the class-data-sharing archive built by
+@rem gradlew cdsArchive (bin\minecraft_generator.jsa). See bin/generate.
+@echo off
+setlocal
+
+set APP_BIN=%~dp0
+if defined JAVA_HOME (set JAVA_EXE=%JAVA_HOME%\bin\java.exe) else (set JAVA_EXE=java.exe)
+for %%J in ("%APP_BIN%*-all.jar") do set JAR=%%J
+
+"%JAVA_EXE%" -XX:SharedArchiveFile="%APP_BIN%minecraft_generator.jsa" -Xshare:auto ^
+    -Xlog:cds=off -Xlog:cds+dynamic=off -Djava.awt.headless=true %JAVA_OPTS% ^
+    -jar "%JAR%" %*
+exit /b %ERRORLEVEL%
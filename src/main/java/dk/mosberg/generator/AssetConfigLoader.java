@@ -1,49 +1,393 @@
 package dk.mosberg.generator;
 
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
+/**
+ * Loads material definitions. Each file is read and parsed once; the parsed tree is validated and
+ * then bound to {@link MaterialDefinition} directly.
+ * <p>
+ * Besides one material per {@code materials/*.json}, materials can come in bundles: JSON Lines
+ * files ({@code *.jsonl}, {@code *.ndjson}, one material per line) or {@code .json} files holding
+ * a top-level array. Bundles are read record by record (large arrays with a streaming
+ * {@link JsonReader}), and errors name the line ({@code file:12}) or array index
+ * ({@code file[3]}).
+ * <p>
+ * {@link #load} is a pipeline: a reader thread walks the files and bundle records in sorted order,
+ * the validation threads parse, validate and bind them, and the calling thread merges the
+ * results (materials and their log lines) back in read order and hands each material to the
+ * sink. At most {@link #WINDOW} records are between the reader and the merge, so a slow sink
+ * holds the reader back instead of materials piling up, and the outcome is the same as loading
+ * sequentially. In strict mode the first failure stops the pipeline; otherwise every failing
+ * file or record is logged, skipped and listed in the run report ({@link Metrics#skipped}).
+ */
 public final class AssetConfigLoader {
 
+    /** Receives the loaded materials in file order, on the thread that called {@link #load}. */
+    @FunctionalInterface
+    public interface MaterialSink {
+        /**
+         * @param sourceFile input-relative file the material came from (the bundle, for bundled
+         *        materials)
+         */
+        void accept(MaterialDefinition material, String sourceFile) throws Exception;
+    }
+
+    /**
+     * Outcome of one record: a material, or a failure message plus any schema violations.
+     * {@code where} is the file, or the file with a line number or array index for bundles.
+     */
+    private record Result(Path file, String where, MaterialDefinition material, String failure,
+            List<ValidationError> errors, Exception cause) {
+    }
+
+    private record Source(Path file, long size) {
+    }
+
+    /** Produces a record's JSON on a validation thread; null content means "read the file". */
+    @FunctionalInterface
+    private interface Content {
+        JsonElement parse() throws Exception;
+    }
+
+    /** A file or bundle record on its way from the reader to validation, numbered in read order. */
+    private record Record(int ordinal, Path file, String where, Content content) {
+    }
+
+    /**
+     * The results of one record (several for a small array file), the end of the input (no
+     * results; the ordinal is the record count) or an error that ends the load.
+     */
+    private record Batch(int ordinal, List<Result> results, Throwable error) {
+    }
+
+    /** .json files above this size are peeked at and streamed if they hold an array. */
+    private static final long STREAM_THRESHOLD = 1 << 20;
+
+    /** Records between the reader and the in-order merge; bounds memory and the reorder buffer. */
+    private static final int WINDOW = 64;
+
+    private static final Record STOP = new Record(-1, null, null, null);
+
     private final Path inputDir;
     private final SchemaValidator validator;
+    private final int threads;
 
     public AssetConfigLoader(Path inputDir, SchemaValidator validator) {
+        this(inputDir, validator, 1);
+    }
+
+    public AssetConfigLoader(Path inputDir, SchemaValidator validator, int threads) {
         this.inputDir = inputDir;
         this.validator = validator;
+        this.threads = Math.max(1, threads);
     }
 
-    public List<MaterialDefinition> loadMaterials() throws Exception {
+    /**
+     * Streams every material to {@code sink} in file order. An exception from the sink stops the
+     * pipeline and is rethrown.
+     */
+    public void load(MaterialSink sink) throws Exception {
         Path materialsDir = inputDir.resolve("materials");
         Path schemaPath = inputDir.resolve("schemas").resolve("material.schema.json");
 
-        List<Path> files = FileUtils.listJsonFiles(materialsDir);
-        List<MaterialDefinition> materials = new ArrayList<>();
+        Semaphore window = new Semaphore(WINDOW);
+        BlockingQueue<Record> records = new ArrayBlockingQueue<>(WINDOW + threads);
+        // One extra slot for the end (or reader error) batch, which holds no window permit.
+        BlockingQueue<Batch> batches = new ArrayBlockingQueue<>(WINDOW + 1);
+        AtomicBoolean stop = new AtomicBoolean();
+        int loaded = 0;
+        int skipped = 0;
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads + 1);
+        try {
+            pool.submit(() -> new Reader(records, window, stop).run(materialsDir, batches));
+            for (int i = 0; i < threads; i++)
+                pool.submit(() -> validate(records, batches, schemaPath, stop));
+
+            Map<Integer, Batch> early = new HashMap<>();
+            int total = -1;
+            for (int next = 0; total < 0 || next < total;) {
+                Batch batch = early.remove(next);
+                if (batch == null) {
+                    batch = batches.take();
+                    if (batch.error() != null)
+                        throw rethrowable(batch.error());
+                    if (batch.results() == null) {
+                        total = batch.ordinal();
+                        continue;
+                    }
+                    if (batch.ordinal() != next) {
+                        early.put(batch.ordinal(), batch);
+                        continue;
+                    }
+                }
+
+                for (Result r : batch.results()) {
+                    if (merge(r)) {
+                        sink.accept(r.material(), relative(r.file()));
+                        loaded++;
+                    } else {
+                        skipped++;
+                    }
+                }
+                next++;
+                window.release();
+            }
+        } finally {
+            stop.set(true);
+            pool.shutdownNow();
+            pool.close();
+        }
+
+        Log.info("Loaded materials: " + loaded);
+        if (skipped > 0)
+            Log.warn("Skipped invalid materials: " + skipped);
+    }
+
+    /**
+     * Material files and bundles under {@code dir}, sorted, with the sizes the walk already read.
+     */
+    private static List<Source> listMaterialFiles(Path dir) throws Exception {
+        List<Source> out = new ArrayList<>();
+        if (!Files.isDirectory(dir))
+            return out;
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path p, BasicFileAttributes attrs) {
+                String name = p.getFileName().toString();
+                if (attrs.isRegularFile() && (name.endsWith(".json") || isJsonLines(name)))
+                    out.add(new Source(p, attrs.size()));
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        out.sort(Comparator.comparing(Source::file));
+        return out;
+    }
+
+    private static boolean isJsonLines(String name) {
+        return name.endsWith(".jsonl") || name.endsWith(".ndjson");
+    }
+
+    /**
+     * The first stage: splits the input into records. Single-material files go through as a path
+     * (validation threads read and parse them), JSON Lines as raw lines; only large arrays are
+     * parsed here, since a streaming reader can't be shared. Each record takes a window permit,
+     * which the merge gives back.
+     */
+    private final class Reader {
+        private final BlockingQueue<Record> records;
+        private final Semaphore window;
+        private final AtomicBoolean stop;
+        private int ordinal;
+
+        Reader(BlockingQueue<Record> records, Semaphore window, AtomicBoolean stop) {
+            this.records = records;
+            this.window = window;
+            this.stop = stop;
+        }
+
+        void run(Path materialsDir, BlockingQueue<Batch> batches) {
+            try {
+                for (Source source : listMaterialFiles(materialsDir)) {
+                    if (stop.get())
+                        break;
+                    read(source);
+                }
+                for (int i = 0; i < threads; i++)
+                    records.put(STOP);
+                batches.put(new Batch(ordinal, null, null));
+            } catch (InterruptedException e) {
+                // The merge gave up; nobody is waiting for the rest.
+            } catch (Throwable t) {
+                batches.offer(new Batch(ordinal, null, t));
+            }
+        }
 
-        for (Path f : files) {
-            if (!validator.validateFile(f, schemaPath)) {
-                String msg = "Material failed schema validation: " + f;
-                if (validator.strict())
-                    throw new IllegalArgumentException(msg);
-                Log.warn(msg);
-                continue;
+        private void read(Source source) throws InterruptedException {
+            Path f = source.file();
+            int count = 0;
+            try {
+                if (isJsonLines(f.getFileName().toString())) {
+                    try (BufferedReader in = Files.newBufferedReader(f, StandardCharsets.UTF_8)) {
+                        String line;
+                        int lineNo = 0;
+                        while ((line = in.readLine()) != null && !stop.get()) {
+                            lineNo++;
+                            if (line.isBlank())
+                                continue;
+                            String text = line;
+                            emit(f, f + ":" + lineNo, () -> parseLine(f, text));
+                            count++;
+                        }
+                    }
+                } else if (source.size() > STREAM_THRESHOLD && startsWithArray(f)) {
+                    try (JsonReader reader = open(f)) {
+                        reader.beginArray();
+                        while (reader.hasNext() && !stop.get()) {
+                            JsonElement json;
+                            try (var span = Metrics.span(Metrics.Phase.PARSE, f)) {
+                                json = JsonParser.parseReader(reader);
+                            }
+                            emit(f, f + "[" + count + "]", () -> json);
+                            count++;
+                        }
+                    }
+                } else {
+                    emit(f, f.toString(), null);
+                }
+            } catch (IOException | JsonParseException e) {
+                // Unreadable file, or a syntax error part-way through a bundle (not recoverable);
+                // reported through validation so it's merged in order like any other failure.
+                String where = count == 0 ? f.toString() : f + " after record " + count;
+                emit(f, where, () -> {
+                    throw e;
+                });
             }
+        }
+
+        private void emit(Path f, String where, Content content) throws InterruptedException {
+            window.acquire();
+            records.put(new Record(ordinal++, f, where, content));
+        }
+    }
+
+    private static JsonElement parseLine(Path f, String line) {
+        try (var span = Metrics.span(Metrics.Phase.PARSE, f)) {
+            return JsonParser.parseString(line);
+        }
+    }
 
-            MaterialDefinition mat =
-                    FileUtils.GSON.fromJson(FileUtils.readString(f), MaterialDefinition.class);
-            if (mat == null) {
-                String msg = "Material JSON is null/invalid: " + f;
-                if (validator.strict())
-                    throw new IllegalArgumentException(msg);
-                Log.warn(msg);
-                continue;
+    private static boolean startsWithArray(Path f) throws IOException {
+        try (JsonReader reader = open(f)) {
+            return reader.peek() == JsonToken.BEGIN_ARRAY;
+        }
+    }
+
+    private static JsonReader open(Path f) throws IOException {
+        return new JsonReader(Files.newBufferedReader(f, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The second stage, on each validation thread: parses, validates and binds records until the
+     * reader's stop marker. Only reports; logging and strict-mode failures happen in
+     * {@link #merge}, in file order. In strict mode the first failure sets {@code stop}, after
+     * which records are passed on empty.
+     */
+    private void validate(BlockingQueue<Record> records, BlockingQueue<Batch> batches,
+            Path schemaPath, AtomicBoolean stop) {
+        try {
+            Record rec;
+            while ((rec = records.take()) != STOP) {
+                List<Result> results = new ArrayList<>();
+                try {
+                    if (!stop.get())
+                        load(rec, schemaPath, stop, results);
+                } catch (Throwable t) {
+                    batches.put(new Batch(rec.ordinal(), null, t));
+                    return;
+                }
+                batches.put(new Batch(rec.ordinal(), results, null));
             }
+        } catch (InterruptedException e) {
+            // The merge gave up; nobody is waiting for the rest.
+        }
+    }
 
-            materials.add(mat);
+    private void load(Record rec, Path schemaPath, AtomicBoolean stop, List<Result> results)
+            throws Exception {
+        Path f = rec.file();
+        JsonElement json;
+        try {
+            if (rec.content() != null) {
+                json = rec.content().parse();
+            } else {
+                try (var span = Metrics.span(Metrics.Phase.PARSE, f)) {
+                    json = FileUtils.readJson(f);
+                }
+            }
+        } catch (IOException | JsonParseException e) {
+            add(results, failed(f, rec.where(), "Material JSON is unreadable: " + rec.where()
+                    + " (" + e.getMessage() + ")", List.of(), e), stop);
+            return;
         }
 
-        Log.info("Loaded materials: " + materials.size());
-        return materials;
+        if (rec.content() == null && json.isJsonArray()) {
+            JsonArray arr = json.getAsJsonArray();
+            for (int i = 0; i < arr.size() && !stop.get(); i++)
+                add(results, bind(f, f + "[" + i + "]", arr.get(i), schemaPath), stop);
+        } else {
+            add(results, bind(f, rec.where(), json, schemaPath), stop);
+        }
+    }
+
+    private void add(List<Result> results, Result r, AtomicBoolean stop) {
+        results.add(r);
+        if (r.failure() != null && validator.strict())
+            stop.set(true);
+    }
+
+    private Result bind(Path f, String where, JsonElement json, Path schemaPath) {
+        List<ValidationError> errors = validator.validate(json, schemaPath);
+        if (!errors.isEmpty())
+            return failed(f, where, "Material failed schema validation: " + where, errors, null);
+
+        MaterialDefinition mat = FileUtils.GSON.fromJson(json, MaterialDefinition.class);
+        if (mat == null)
+            return failed(f, where, "Material JSON is null/invalid: " + where, List.of(), null);
+        return new Result(f, where, mat, null, List.of(), null);
+    }
+
+    private static Result failed(Path f, String where, String message,
+            List<ValidationError> errors, Exception cause) {
+        return new Result(f, where, null, message, errors, cause);
+    }
+
+    /** Logs one result; true if it is a material for the sink. */
+    private boolean merge(Result r) {
+        for (ValidationError err : r.errors())
+            Log.error("Schema validation error: " + r.where() + " -> " + err);
+
+        if (r.failure() != null) {
+            if (validator.strict())
+                throw new IllegalArgumentException(r.failure(), r.cause());
+            Log.warn(r.failure());
+            Metrics.skipped(r.where(), r.failure(), r.errors());
+            return false;
+        }
+        return true;
+    }
+
+    private String relative(Path file) {
+        return inputDir.relativize(file).toString().replace('\\', '/');
+    }
+
+    private static Exception rethrowable(Throwable t) {
+        if (t instanceof Error e)
+            throw e;
+        return t instanceof Exception e ? e : new IllegalStateException(t);
     }
 }
@@ -0,0 +1,141 @@
+package dk.mosberg.generator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Which assets the materials of each category produce ({@code asset-rules.json} in the input dir,
+ * asset-rules.schema.json): category ids mapped to lists of output templates, plus a default list
+ * for categories that are not listed.
+ *
+ * <pre>
+ * { "schema": "asset-rules", "default": ["generated_item"],
+ *   "categories": { "woodlog": ["pillar"], "woodplank": ["cube_all", "slab", "stairs"] } }
+ * </pre>
+ *
+ * Without the file the built-in rules apply: the block, glass and wood categories are cube_all
+ * blocks and everything else is a generated item.
+ */
+public final class AssetRules {
+
+    public enum Template {
+        CUBE_ALL, PILLAR, SLAB, STAIRS, PANE, GENERATED_ITEM;
+
+        public String id() {
+            return name().toLowerCase(Locale.ROOT);
+        }
+
+        public boolean block() {
+            return this != GENERATED_ITEM;
+        }
+
+        static Template of(String id) {
+            return valueOf(id.toUpperCase(Locale.ROOT));
+        }
+    }
+
+    public static final String FILE_NAME = "asset-rules.json";
+
+    private static final List<Template> ITEM = List.of(Template.GENERATED_ITEM);
+
+    // The categories of common.schema.json that contain "block", "glass", "wood" or "plank".
+    private static final List<String> BLOCK_CATEGORIES = List.of("buildableglass", "glass",
+            "metalblock", "netherwood", "wood", "woodlog", "woodlogtop", "woodplank");
+
+    private final Map<String, List<Template>> categories;
+    private final List<Template> fallback;
+
+    private AssetRules(Map<String, List<Template>> categories, List<Template> fallback) {
+        this.categories = categories;
+        this.fallback = fallback;
+    }
+
+    public static AssetRules defaults() {
+        Map<String, List<Template>> categories = new LinkedHashMap<>();
+        for (String category : BLOCK_CATEGORIES)
+            categories.put(category, List.of(Template.CUBE_ALL));
+        return new AssetRules(categories, ITEM);
+    }
+
+    /**
+     * Loads {@code asset-rules.json} from the input dir, or returns the built-in rules if there is
+     * none (or, in non-strict mode, if it is invalid).
+     */
+    public static AssetRules load(Path inputDir, SchemaValidator validator) throws Exception {
+        Path file = inputDir.resolve(FILE_NAME);
+        if (!FileUtils.exists(file))
+            return defaults();
+
+        JsonElement json = FileUtils.readJson(file);
+        Path schemaPath = inputDir.resolve("schemas").resolve("asset-rules.schema.json");
+        List<ValidationError> errors = validator.validate(json, schemaPath);
+        if (!errors.isEmpty()) {
+            for (ValidationError err : errors)
+                Log.error("Schema validation error: " + file + " -> " + err);
+            String msg = "Asset rules failed schema validation: " + file;
+            if (validator.strict())
+                throw new IllegalArgumentException(msg);
+            Log.warn(msg + "; using the built-in rules.");
+            return defaults();
+        }
+
+        JsonObject root = json.getAsJsonObject();
+        Map<String, List<Template>> categories = new LinkedHashMap<>();
+        List<Template> fallback;
+        try {
+            for (Map.Entry<String, JsonElement> e : root.getAsJsonObject("categories").entrySet()) {
+                categories.put(e.getKey(),
+                        templates(e.getValue().getAsJsonArray(), e.getKey(), file));
+            }
+            fallback = root.has("default")
+                    ? templates(root.getAsJsonArray("default"), "default", file)
+                    : ITEM;
+        } catch (IllegalArgumentException e) {
+            if (validator.strict())
+                throw e;
+            Log.warn(e.getMessage() + "; using the built-in rules.");
+            return defaults();
+        }
+
+        Log.info("Loaded asset rules: " + categories.size() + " categories");
+        return new AssetRules(categories, fallback);
+    }
+
+    /**
+     * The templates in file order, without repeats. Block templates and generated_item both want
+     * {@code models/item/<id>.json} and the texture in a different place, so they don't mix.
+     */
+    private static List<Template> templates(JsonArray arr, String category, Path file) {
+        Set<Template> seen = EnumSet.noneOf(Template.class);
+        List<Template> out = new ArrayList<>();
+        for (JsonElement el : arr) {
+            Template t = Template.of(el.getAsString());
+            if (seen.add(t))
+                out.add(t);
+        }
+        if (seen.contains(Template.GENERATED_ITEM) && seen.size() > 1)
+            throw new IllegalArgumentException("Asset rules: '" + category
+                    + "' combines generated_item with block templates: " + file);
+        return List.copyOf(out);
+    }
+
+    /** The listed categories and their templates, in file order. */
+    public Map<String, List<Template>> categories() {
+        return categories;
+    }
+
+    /** Templates for categories that are not listed. */
+    public List<Template> fallback() {
+        return fallback;
+    }
+}
@@ -1,76 +1,224 @@
 package dk.mosberg.generator;
 
+import com.google.gson.Gson;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
-import com.google.gson.JsonParser;
 
-import javax.imageio.ImageIO;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
-import java.util.LinkedHashMap;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
 import java.util.Map;
 
-public final class AssetWriter {
+/**
+ * Writes generated files below the output root, or into a {@link PackArchive} when one is given
+ * (or, with {@code --verify}, only hands them to an {@link OutputVerifier}).
+ * Safe to call from several generator threads at once: plain writes target distinct files, and
+ * lang entries go to a shared {@link LangAccumulator} that is written by {@link #flush()}.
+ * <p>
+ * Disk operations go through a {@link WriteQueue}, so with I/O threads the calling thread only
+ * renders the bytes and hands them off; {@link #flush()} waits for the queue and reports the first
+ * failed operation. Close the writer to stop its I/O threads.
+ */
+public final class AssetWriter implements AutoCloseable {
+
+    /** How input textures that need no recoloring reach the output dir. */
+    public enum TextureMode {
+        COPY, HARDLINK
+    }
 
     private final Path outputRoot;
     private final boolean dryRun;
+    private final PackArchive archive;
+    private final LangAccumulator lang;
+    private final PngEncoder png;
+    private final TextureMode textureMode;
+    private final Gson gson;
+    private final WriteQueue queue;
+    private final OutputVerifier verifier;
+    private final FileUtils.DirCache dirs = new FileUtils.DirCache();
+    private volatile boolean linkFailed;
 
     public AssetWriter(Path outputRoot, boolean dryRun) {
+        this(outputRoot, dryRun, null, PngEncoder.defaults(), TextureMode.COPY, false,
+                WriteQueue.synchronous(), null);
+    }
+
+    /**
+     * A writer for {@code config}'s output dir, or for {@code archive} when it is non-null (then
+     * existing lang files on disk are not merged). Archive and dry-run writes never touch the disk
+     * and stay on the calling thread.
+     */
+    public AssetWriter(GeneratorConfig config, PackArchive archive) {
+        this(config.outputDir(), config.dryRun(), archive, config.pngEncoder(),
+                config.textureMode(), config.minify(),
+                archive != null || config.dryRun() ? WriteQueue.synchronous()
+                        : new WriteQueue(config.ioThreads(), config.ioGroupByDir()), null);
+    }
+
+    /**
+     * A writer that hands every file to {@code verifier} instead of writing it. Lang files are
+     * merged with the ones in the output dir, as a normal run would.
+     */
+    public static AssetWriter verifying(GeneratorConfig config, OutputVerifier verifier) {
+        return new AssetWriter(config.outputDir(), false, null, config.pngEncoder(),
+                config.textureMode(), config.minify(), WriteQueue.synchronous(), verifier);
+    }
+
+    private AssetWriter(Path outputRoot, boolean dryRun, PackArchive archive, PngEncoder png,
+            TextureMode textureMode, boolean minify, WriteQueue queue, OutputVerifier verifier) {
         this.outputRoot = outputRoot;
         this.dryRun = dryRun;
+        this.archive = archive;
+        this.lang = new LangAccumulator(archive == null ? outputRoot : null);
+        this.png = png;
+        this.textureMode = textureMode;
+        this.gson = minify ? FileUtils.GSON : FileUtils.PRETTY_GSON;
+        this.queue = queue;
+        this.verifier = verifier;
     }
 
     public void writeJson(Path relativePath, JsonElement json) throws Exception {
-        String content = FileUtils.PRETTY_GSON.toJson(json) + "\n";
+        String content = gson.toJson(json) + "\n";
         writeBytes(relativePath, content.getBytes(StandardCharsets.UTF_8));
     }
 
-    public void copyPng(Path from, Path relativeTo) throws Exception {
-        byte[] bytes = FileUtils.readBytes(from);
-        writeBytes(relativeTo, bytes);
+    /**
+     * Compiles {@code sample} (containing {@link JsonTemplate#SLOT}) with this writer's JSON
+     * formatting, for use with {@link #writeTemplate}.
+     */
+    public JsonTemplate template(JsonElement sample) {
+        return JsonTemplate.compile(sample, gson);
     }
 
-    public void writePng(Path relativePath, BufferedImage image) throws Exception {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        ImageIO.write(image, "png", baos);
-        writeBytes(relativePath, baos.toByteArray());
+    public void writeTemplate(Path relativePath, JsonTemplate template, String value)
+            throws Exception {
+        writeBytes(relativePath, template.render(value));
     }
 
-    public void mergeLang(String modid, String langCode, Map<String, String> additions)
-            throws Exception {
-        Path rel = AssetsPaths.lang(modid, langCode);
-        Path abs = outputRoot.resolve(rel);
+    /**
+     * Copies (or hardlinks) an input texture. Only archive mode reads the bytes into memory; on
+     * disk the file is copied channel to channel and skipped when the output already matches,
+     * using the attributes from the texture index rather than stat'ing the input again.
+     */
+    public void copyPng(TextureIndex.Texture from, Path relativeTo) throws Exception {
+        if (verifier != null) {
+            verifier.putTexture(relativeTo, from);
+            return;
+        }
+        if (dryRun || archive != null) {
+            writeBytes(relativeTo, FileUtils.readBytes(from.file()));
+            return;
+        }
+
+        Path to = outputRoot.resolve(relativeTo);
+        queue.submit(to, () -> {
+            try (var span = Metrics.span(Metrics.Phase.WRITE, relativeTo)) {
+                copyOrLink(from.file(), from.attrs(), to);
+            }
+        });
+    }
 
-        JsonObject merged = new JsonObject();
-        if (FileUtils.exists(abs)) {
+    private void copyOrLink(Path from, BasicFileAttributes fromAttrs, Path to)
+            throws IOException {
+        if (textureMode == TextureMode.HARDLINK && !linkFailed) {
             try {
-                merged = JsonParser.parseString(FileUtils.readString(abs)).getAsJsonObject();
-            } catch (Exception e) {
-                Log.warn("Existing lang file invalid; overwriting: " + abs);
+                Metrics.count(FileUtils.linkIfChanged(from, fromAttrs, to, dirs)
+                        ? Metrics.Counter.FILES_LINKED
+                        : Metrics.Counter.FILES_UNCHANGED);
+                return;
+            } catch (UnsupportedOperationException | IOException e) {
+                linkFailed = true;
+                Log.warn("Hardlinks not possible (" + e + "); copying textures instead.");
             }
         }
+        if (FileUtils.copyIfChanged(from, fromAttrs, to, dirs)) {
+            Metrics.count(Metrics.Counter.FILES_WRITTEN);
+            Metrics.add(Metrics.Counter.BYTES_WRITTEN, fromAttrs.size());
+        } else {
+            Metrics.count(Metrics.Counter.FILES_UNCHANGED);
+        }
+    }
 
-        // Preserve insertion order in writing by building a LinkedHashMap-like merge.
-        Map<String, String> out = new LinkedHashMap<>();
-        for (String k : merged.keySet())
-            out.put(k, merged.get(k).getAsString());
-        out.putAll(additions);
+    public void writePng(Path relativePath, BufferedImage image) throws Exception {
+        byte[] bytes;
+        try (var span = Metrics.span(Metrics.Phase.PNG_ENCODE, relativePath)) {
+            bytes = png.encode(image);
+        }
+        writeBytes(relativePath, bytes);
+    }
+
+    public void mergeLang(String modid, String langCode, Map<String, String> additions) {
+        lang.add(modid, langCode, additions);
+    }
+
+    public void removeLang(String modid, String langCode, Collection<String> keys) {
+        lang.remove(modid, langCode, keys);
+    }
+
+    public void delete(Path relativePath) throws Exception {
+        if (archive != null || verifier != null)
+            return;
+        if (dryRun) {
+            Log.info("[dry-run] delete " + relativePath);
+            return;
+        }
+        Path file = outputRoot.resolve(relativePath);
+        queue.submit(file, () -> {
+            if (FileUtils.deleteIfExists(file))
+                Metrics.count(Metrics.Counter.FILES_DELETED);
+        });
+    }
 
-        JsonObject json = new JsonObject();
-        for (Map.Entry<String, String> e : out.entrySet())
-            json.addProperty(e.getKey(), e.getValue());
+    /**
+     * Writes everything that is buffered for the end of the run (the lang files and, in archive
+     * mode, the archive itself) and waits until every queued write is on disk. Throws if any
+     * write failed.
+     */
+    public void flush() throws Exception {
+        queue.await();
+        for (Map.Entry<Path, JsonObject> e : lang.toJson().entrySet())
+            writeJson(e.getKey(), e.getValue());
+        queue.await();
+        if (archive != null && !dryRun)
+            archive.write();
+    }
 
-        writeJson(rel, json);
+    @Override
+    public void close() {
+        queue.close();
     }
 
     private void writeBytes(Path relativePath, byte[] bytes) throws Exception {
-        Path out = outputRoot.resolve(relativePath);
+        if (verifier != null) {
+            verifier.put(relativePath, bytes);
+            return;
+        }
         if (dryRun) {
             Log.info("[dry-run] write " + relativePath + " (" + bytes.length + " bytes)");
             return;
         }
-        FileUtils.writeBytesIfChanged(out, bytes);
+        if (archive != null) {
+            archive.put(relativePath, bytes);
+            Metrics.count(Metrics.Counter.FILES_WRITTEN);
+            Metrics.add(Metrics.Counter.BYTES_WRITTEN, bytes.length);
+            return;
+        }
+
+        Path file = outputRoot.resolve(relativePath);
+        queue.submit(file, () -> {
+            boolean written;
+            try (var span = Metrics.span(Metrics.Phase.WRITE, relativePath)) {
+                written = FileUtils.writeBytesIfChanged(file, bytes, dirs);
+            }
+            if (written) {
+                Metrics.count(Metrics.Counter.FILES_WRITTEN);
+                Metrics.add(Metrics.Counter.BYTES_WRITTEN, bytes.length);
+            } else {
+                Metrics.count(Metrics.Counter.FILES_UNCHANGED);
+            }
+        });
     }
 }
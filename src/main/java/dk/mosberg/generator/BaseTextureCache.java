@@ -0,0 +1,84 @@
+package dk.mosberg.generator;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Decoded, ramp-indexed base textures, shared by every material that recolors the same base. The
+ * cache outlives a single run (watch mode), so entries remember the file's size and mtime (from
+ * the run's {@link TextureIndex}) and the ramp's hash, and are rebuilt in place when either
+ * changes.
+ */
+public final class BaseTextureCache {
+
+    private record Key(Path texture, String rampId) {
+    }
+
+    private record Cached(long size, long modified, String rampHash,
+            CompletableFuture<RampIndexedTexture> texture) {
+
+        boolean matches(long size, long modified, String rampHash) {
+            return this.size == size && this.modified == modified
+                    && this.rampHash.equals(rampHash);
+        }
+    }
+
+    private final Map<Key, Cached> cache = new ConcurrentHashMap<>();
+
+    public RampIndexedTexture get(TextureIndex.Texture base, ColorRamp baseRamp)
+            throws Exception {
+        Path texture = base.file();
+        Key key = new Key(texture.toAbsolutePath().normalize(), baseRamp.id());
+        long size = base.size();
+        long modified = base.modified();
+        String rampHash = baseRamp.hash();
+
+        Cached cached = cache.get(key);
+        if (cached == null || !cached.matches(size, modified, rampHash)) {
+            // Only the map update happens under the bin lock; the first caller decodes outside it
+            // and concurrent callers for the same base wait on its future.
+            Cached fresh = new Cached(size, modified, rampHash, new CompletableFuture<>());
+            cached = cache.compute(key,
+                    (k, old) -> old != null && old.matches(size, modified, rampHash) ? old : fresh);
+            if (cached == fresh)
+                load(key, fresh, baseRamp);
+        }
+        return join(cached.texture());
+    }
+
+    /** Number of cached base textures. */
+    int size() {
+        return cache.size();
+    }
+
+    private void load(Key key, Cached entry, ColorRamp baseRamp) {
+        try {
+            BufferedImage image;
+            try (var span = Metrics.span(Metrics.Phase.TEXTURE_DECODE, key.texture())) {
+                image = TextureRecolorer.read(key.texture());
+            }
+            try (var span = Metrics.span(Metrics.Phase.RECOLOR, key.texture())) {
+                entry.texture().complete(RampIndexedTexture.build(image, baseRamp));
+            }
+        } catch (Throwable t) {
+            // Let the next request retry instead of caching the failure.
+            cache.remove(key, entry);
+            entry.texture().completeExceptionally(t);
+        }
+    }
+
+    private static RampIndexedTexture join(CompletableFuture<RampIndexedTexture> future)
+            throws Exception {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception cause)
+                throw cause;
+            throw (Error) e.getCause();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package dk.mosberg.generator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A batch file (--batch): several generator jobs to run in one process.
+ *
+ * <pre>
+ * { "jobs": [ { "modid": "a", "input": "a/src/main/resources", "output": "a/generated",
+ *               "lang": "en_us" }, ... ] }
+ * </pre>
+ *
+ * Relative paths are resolved against the batch file's directory; {@code lang} is optional and
+ * defaults to the command line's. Every other option comes from the command line.
+ */
+public record BatchManifest(List<Job> jobs) {
+
+    public record Job(String modId, Path input, Path output, String lang) {
+    }
+
+    public static BatchManifest load(Path file, String defaultLang) throws Exception {
+        JsonElement root = FileUtils.readJson(file);
+        if (!root.isJsonObject() || !root.getAsJsonObject().has("jobs")
+                || !root.getAsJsonObject().get("jobs").isJsonArray())
+            throw new IllegalArgumentException("Batch file needs a \"jobs\" array: " + file);
+
+        Path base = file.toAbsolutePath().getParent();
+        JsonArray arr = root.getAsJsonObject().getAsJsonArray("jobs");
+        List<Job> jobs = new ArrayList<>();
+        for (int i = 0; i < arr.size(); i++) {
+            if (!arr.get(i).isJsonObject())
+                throw new IllegalArgumentException("Batch job " + i + " is not an object: " + file);
+            JsonObject job = arr.get(i).getAsJsonObject();
+            String lang = job.has("lang") ? string(job, "lang", i, file) : defaultLang;
+            jobs.add(new Job(string(job, "modid", i, file),
+                    base.resolve(string(job, "input", i, file)).normalize(),
+                    base.resolve(string(job, "output", i, file)).normalize(), lang));
+        }
+        if (jobs.isEmpty())
+            throw new IllegalArgumentException("Batch file has no jobs: " + file);
+        return new BatchManifest(List.copyOf(jobs));
+    }
+
+    /**
+     * Splits the jobs into groups that must run one after another because one writes where another
+     * writes or reads: their output dirs, or one's output dir and the other's input dir, are the
+     * same or nested. Separate groups can run at the same time. Order within a group (and of
+     * the groups, by first job) follows the file.
+     */
+    public List<List<Job>> independentGroups() {
+        int n = jobs.size();
+        int[] parent = new int[n];
+        for (int i = 0; i < n; i++)
+            parent[i] = i;
+
+        for (int i = 0; i < n; i++) {
+            for (int j = i + 1; j < n; j++) {
+                if (conflict(jobs.get(i), jobs.get(j)))
+                    parent[find(parent, j)] = find(parent, i);
+            }
+        }
+
+        List<List<Job>> groups = new ArrayList<>();
+        List<Integer> roots = new ArrayList<>();
+        for (int i = 0; i < n; i++) {
+            int root = find(parent, i);
+            int at = roots.indexOf(root);
+            if (at < 0) {
+                roots.add(root);
+                groups.add(new ArrayList<>());
+                at = groups.size() - 1;
+            }
+            groups.get(at).add(jobs.get(i));
+        }
+        return groups;
+    }
+
+    private static boolean conflict(Job a, Job b) {
+        return overlaps(a.output(), b.output()) || overlaps(a.output(), b.input())
+                || overlaps(b.output(), a.input());
+    }
+
+    private static boolean overlaps(Path a, Path b) {
+        return a.startsWith(b) || b.startsWith(a);
+    }
+
+    private static int find(int[] parent, int i) {
+        while (parent[i] != i)
+            i = parent[i] = parent[parent[i]];
+        return i;
+    }
+
+    private static String string(JsonObject job, String key, int index, Path file) {
+        JsonElement value = job.get(key);
+        if (value == null || !value.isJsonPrimitive() || value.getAsString().isBlank())
+            throw new IllegalArgumentException(
+                    "Batch job " + index + " needs a \"" + key + "\" string: " + file);
+        return value.getAsString();
+    }
+}
@@ -0,0 +1,321 @@
+package dk.mosberg.generator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Incremental build state stored in the output dir. Maps each material id to the content hash of
+ * its inputs (material JSON + texture) and the outputs and lang entries it produced. A global
+ * fingerprint covers everything shared by all materials (generator version, schemas, modid, lang);
+ * when it changes every entry is considered stale.
+ * <p>
+ * Texture content enters the material hash as a digest, kept per texture with the size and mtime
+ * it was computed for; while both match, the texture is not read again.
+ */
+public final class BuildManifest {
+
+    public static final String FILE_NAME = ".generator-manifest.json";
+    private static final int FORMAT = 2;
+
+    public record Entry(String hash, List<Path> outputs, Map<String, String> lang) {
+    }
+
+    private record TextureStamp(long size, long modified, String digest) {
+    }
+
+    private final Map<String, Entry> entries = new TreeMap<>();
+    private final Map<String, TextureStamp> textures = new TreeMap<>();
+    private String fingerprint = "";
+    private boolean trusted;
+
+    private BuildManifest() {}
+
+    public static BuildManifest empty() {
+        return new BuildManifest();
+    }
+
+    public static BuildManifest load(Path outputDir) {
+        BuildManifest manifest = new BuildManifest();
+        Path file = outputDir.resolve(FILE_NAME);
+        if (!FileUtils.exists(file))
+            return manifest;
+
+        try {
+            JsonObject root = JsonParser.parseString(FileUtils.readString(file)).getAsJsonObject();
+            if (root.get("format").getAsInt() != FORMAT)
+                return manifest;
+            manifest.fingerprint = root.get("fingerprint").getAsString();
+
+            for (Map.Entry<String, JsonElement> e : root.getAsJsonObject("materials").entrySet()) {
+                JsonObject o = e.getValue().getAsJsonObject();
+                List<Path> outputs = new ArrayList<>();
+                for (JsonElement p : o.getAsJsonArray("outputs"))
+                    outputs.add(Paths.get(p.getAsString()));
+                Map<String, String> lang = new LinkedHashMap<>();
+                for (Map.Entry<String, JsonElement> l : o.getAsJsonObject("lang").entrySet())
+                    lang.put(l.getKey(), l.getValue().getAsString());
+                manifest.entries.put(e.getKey(), new Entry(o.get("hash").getAsString(),
+                        List.copyOf(outputs), lang));
+            }
+            for (Map.Entry<String, JsonElement> e : root.getAsJsonObject("textures").entrySet()) {
+                JsonObject o = e.getValue().getAsJsonObject();
+                manifest.textures.put(e.getKey(), new TextureStamp(o.get("size").getAsLong(),
+                        o.get("modified").getAsLong(), o.get("sha256").getAsString()));
+            }
+        } catch (Exception e) {
+            Log.warn("Build manifest invalid; doing a full rebuild: " + file);
+            manifest.entries.clear();
+            manifest.textures.clear();
+            manifest.fingerprint = "";
+        }
+        return manifest;
+    }
+
+    /**
+     * Sets the fingerprint of this run. Entries recorded under a different fingerprint are kept
+     * (so their outputs can still be pruned) but never reported as up to date.
+     */
+    public synchronized void useFingerprint(String runFingerprint) {
+        trusted = fingerprint.equals(runFingerprint);
+        fingerprint = runFingerprint;
+    }
+
+    /**
+     * Forces every material to be regenerated this run (stale outputs are still pruned).
+     */
+    public synchronized void invalidate() {
+        trusted = false;
+    }
+
+    /** Every output path the recorded materials produced. */
+    public synchronized Set<Path> outputs() {
+        Set<Path> out = new HashSet<>();
+        for (Entry e : entries.values())
+            out.addAll(e.outputs());
+        return out;
+    }
+
+    public synchronized Entry entry(String id) {
+        return entries.get(id);
+    }
+
+    public boolean isUpToDate(String id, String hash, Path outputRoot) {
+        Entry e = trustedEntry(id);
+        return e != null && e.hash().equals(hash) && outputsExist(e, outputRoot);
+    }
+
+    /**
+     * Like {@link #isUpToDate(String, String, Path)} but without comparing the content hash, for
+     * when the caller already knows the material's inputs are unchanged.
+     */
+    public boolean isUpToDate(String id, Path outputRoot) {
+        Entry e = trustedEntry(id);
+        return e != null && outputsExist(e, outputRoot);
+    }
+
+    private synchronized Entry trustedEntry(String id) {
+        return trusted ? entries.get(id) : null;
+    }
+
+    // Entries are immutable, so the outputs can be stat'ed without holding the lock.
+    private static boolean outputsExist(Entry e, Path outputRoot) {
+        for (Path p : e.outputs()) {
+            if (!FileUtils.exists(outputRoot.resolve(p)))
+                return false;
+        }
+        return true;
+    }
+
+    public synchronized void record(String id, Entry entry) {
+        entries.put(id, entry);
+    }
+
+    /**
+     * Drops every entry whose id is not in {@code liveIds} and returns the dropped entries.
+     */
+    public synchronized List<Entry> retainOnly(Set<String> liveIds) {
+        List<Entry> removed = new ArrayList<>();
+        var it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            var e = it.next();
+            if (!liveIds.contains(e.getKey())) {
+                removed.add(e.getValue());
+                it.remove();
+            }
+        }
+        return removed;
+    }
+
+    /**
+     * SHA-256 of the texture's content, reused from the manifest while the texture's size and
+     * mtime are the ones it was computed for.
+     */
+    public String textureDigest(TextureIndex.Texture texture) throws Exception {
+        TextureStamp stamp;
+        synchronized (this) {
+            stamp = textures.get(texture.rel());
+        }
+        if (stamp != null && stamp.size() == texture.size()
+                && stamp.modified() == texture.modified())
+            return stamp.digest();
+
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        String digest = HexFormat.of().formatHex(md.digest(FileUtils.readBytes(texture.file())));
+        synchronized (this) {
+            textures.put(texture.rel(), new TextureStamp(texture.size(), texture.modified(),
+                    digest));
+        }
+        return digest;
+    }
+
+    /**
+     * Forgets the digests of textures that are no longer in the input.
+     */
+    public synchronized void retainTextures(Set<String> present) {
+        textures.keySet().retainAll(present);
+    }
+
+    public synchronized void save(Path outputDir) throws Exception {
+        JsonObject materials = new JsonObject();
+        for (Map.Entry<String, Entry> e : entries.entrySet()) {
+            JsonArray outputs = new JsonArray();
+            for (Path p : e.getValue().outputs())
+                outputs.add(toPortable(p));
+            JsonObject lang = new JsonObject();
+            for (Map.Entry<String, String> l : e.getValue().lang().entrySet())
+                lang.addProperty(l.getKey(), l.getValue());
+
+            JsonObject o = new JsonObject();
+            o.addProperty("hash", e.getValue().hash());
+            o.add("outputs", outputs);
+            o.add("lang", lang);
+            materials.add(e.getKey(), o);
+        }
+
+        JsonObject textureStamps = new JsonObject();
+        for (Map.Entry<String, TextureStamp> e : textures.entrySet()) {
+            JsonObject o = new JsonObject();
+            o.addProperty("size", e.getValue().size());
+            o.addProperty("modified", e.getValue().modified());
+            o.addProperty("sha256", e.getValue().digest());
+            textureStamps.add(e.getKey(), o);
+        }
+
+        JsonObject root = new JsonObject();
+        root.addProperty("format", FORMAT);
+        root.addProperty("fingerprint", fingerprint);
+        root.add("materials", materials);
+        root.add("textures", textureStamps);
+
+        String content = FileUtils.PRETTY_GSON.toJson(root) + "\n";
+        FileUtils.writeBytesIfChanged(outputDir.resolve(FILE_NAME),
+                content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Fingerprint of everything every material depends on.
+     */
+    public static String runFingerprint(GeneratorConfig config) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        update(md, "format=" + FORMAT);
+        update(md, "version=" + generatorVersion());
+        update(md, "modid=" + config.modId());
+        update(md, "lang=" + config.lang());
+        update(md, "png=" + config.pngLevel() + "/" + config.pngFilter());
+        update(md, "textures=" + config.textureMode());
+        update(md, "minify=" + config.minify());
+
+        Path schemaDir = config.inputDir().resolve("schemas");
+        for (Path schema : FileUtils.listJsonFiles(schemaDir)) {
+            update(md, toPortable(schemaDir.relativize(schema)));
+            md.update(FileUtils.readBytes(schema));
+        }
+        Path rules = config.inputDir().resolve(AssetRules.FILE_NAME);
+        if (FileUtils.exists(rules)) {
+            update(md, AssetRules.FILE_NAME);
+            md.update(FileUtils.readBytes(rules));
+        }
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    /**
+     * Content hash of one material: its bound definition, the texture's {@link #textureDigest}
+     * (or "" without a texture) and the hashes of the palette map or ramps used to recolor it
+     * (or "").
+     */
+    public static String materialHash(MaterialDefinition mat, String textureRel,
+            String textureDigest, String recolorHash) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        update(md, FileUtils.GSON.toJson(mat));
+        update(md, recolorHash);
+        update(md, textureRel);
+        update(md, textureDigest);
+        return HexFormat.of().formatHex(md.digest());
+    }
+
+    private static void update(MessageDigest md, String s) {
+        md.update(s.getBytes(StandardCharsets.UTF_8));
+        md.update((byte) 0);
+    }
+
+    /**
+     * Identity of the generator code: a digest of the jar or class dir it was loaded from, so any
+     * code change (templates, encoders, emitters) invalidates the manifest. Implementation-Version
+     * alone stays the same across builds. Computed once per class loader.
+     */
+    private static String generatorVersion() {
+        return CodeDigest.VALUE;
+    }
+
+    private static final class CodeDigest {
+        static final String VALUE = compute();
+
+        private static String compute() {
+            String version = BuildManifest.class.getPackage().getImplementationVersion();
+            version = version == null ? "dev" : version;
+            try {
+                Path code = Paths.get(BuildManifest.class.getProtectionDomain().getCodeSource()
+                        .getLocation().toURI());
+                MessageDigest md = MessageDigest.getInstance("SHA-256");
+                if (Files.isDirectory(code)) {
+                    List<Path> files;
+                    try (Stream<Path> walk = Files.walk(code)) {
+                        files = walk.filter(Files::isRegularFile).sorted().toList();
+                    }
+                    for (Path f : files) {
+                        update(md, toPortable(code.relativize(f)));
+                        md.update(FileUtils.readBytes(f));
+                    }
+                } else {
+                    md.update(FileUtils.readBytes(code));
+                }
+                return version + "+" + HexFormat.of().formatHex(md.digest());
+            } catch (Exception e) {
+                Log.warn("Can't digest the generator code (" + e + "); code changes won't"
+                        + " invalidate the build manifest.");
+                return version;
+            }
+        }
+    }
+
+    private static String toPortable(Path p) {
+        return p.toString().replace('\\', '/');
+    }
+}
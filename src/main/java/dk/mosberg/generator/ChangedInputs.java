@@ -0,0 +1,56 @@
+package dk.mosberg.generator;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * The input files a build tool reports as changed since the previous run (--changed: one
+ * input-relative path per line). A material whose definition file and texture are both absent
+ * from the list is trusted from the manifest without rehashing. Any other changed file (schemas,
+ * palettes, ramps, ...) can affect every material, so it turns the shortcut off.
+ */
+public final class ChangedInputs {
+
+    /** No information: every material is hashed as usual. */
+    public static final ChangedInputs UNKNOWN = new ChangedInputs(null);
+
+    private final Set<String> changed;
+
+    private ChangedInputs(Set<String> changed) {
+        this.changed = changed;
+    }
+
+    public static ChangedInputs load(Path listFile) throws Exception {
+        Set<String> changed = new HashSet<>();
+        for (String line : FileUtils.readString(listFile).split("\n")) {
+            String rel = line.strip();
+            if (rel.isEmpty())
+                continue;
+            rel = portable(rel);
+            if (!rel.startsWith("materials/") && !rel.startsWith("textures/")) {
+                Log.info("Changed: " + rel + "; checking every material.");
+                return UNKNOWN;
+            }
+            changed.add(rel);
+        }
+        Log.info("Changed inputs: " + changed.size());
+        return new ChangedInputs(changed);
+    }
+
+    /**
+     * True when neither the material's definition file nor its texture is known to have changed.
+     *
+     * @param sourceFile input-relative definition file, or null when there is no single one
+     */
+    public boolean unchanged(String sourceFile, String textureRel) {
+        if (changed == null || sourceFile == null)
+            return false;
+        return !changed.contains(sourceFile) && !changed.contains(portable(textureRel));
+    }
+
+    private static String portable(String rel) {
+        return Paths.get(rel).normalize().toString().replace('\\', '/');
+    }
+}
@@ -0,0 +1,88 @@
+package dk.mosberg.generator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A color ramp (base-ramp.schema.json): RGB colors ordered from darkest to lightest. Base textures
+ * are indexed against a base ramp once, and each variant swaps in a target ramp.
+ */
+public record ColorRamp(String id, int[] colors, String hash) {
+
+    /**
+     * Loads every {@code ramps/*.json} under the input dir, keyed by ramp id.
+     */
+    public static Map<String, ColorRamp> loadAll(Path inputDir, SchemaValidator validator)
+            throws Exception {
+        Path schemaPath = inputDir.resolve("schemas").resolve("base-ramp.schema.json");
+        Map<String, ColorRamp> out = new LinkedHashMap<>();
+
+        for (Path f : FileUtils.listJsonFiles(inputDir.resolve("ramps"))) {
+            byte[] bytes = FileUtils.readBytes(f);
+            JsonElement json = JsonParser.parseString(new String(bytes, StandardCharsets.UTF_8));
+
+            List<ValidationError> errors = validator.validate(json, schemaPath);
+            if (!errors.isEmpty()) {
+                for (ValidationError err : errors)
+                    Log.error("Schema validation error: " + f + " -> " + err);
+                String msg = "Ramp failed schema validation: " + f;
+                if (validator.strict())
+                    throw new IllegalArgumentException(msg);
+                Log.warn(msg);
+                continue;
+            }
+
+            JsonObject obj = json.getAsJsonObject();
+            JsonArray arr = obj.getAsJsonArray("ramp");
+            int[] colors = new int[arr.size()];
+            for (int i = 0; i < colors.length; i++)
+                colors[i] = Integer.parseInt(arr.get(i).getAsString(), 16);
+
+            String hash = HexFormat.of()
+                    .formatHex(MessageDigest.getInstance("SHA-1").digest(bytes));
+            ColorRamp ramp = new ColorRamp(obj.get("id").getAsString(), colors, hash);
+            out.put(ramp.id(), ramp);
+        }
+
+        if (!out.isEmpty())
+            Log.info("Loaded ramps: " + out.size());
+        return out;
+    }
+
+    public int size() {
+        return colors.length;
+    }
+
+    /**
+     * Index of the ramp color closest to {@code rgb} (squared RGB distance).
+     */
+    public int nearest(int rgb) {
+        int r = (rgb >>> 16) & 0xFF;
+        int g = (rgb >>> 8) & 0xFF;
+        int b = rgb & 0xFF;
+
+        int best = 0;
+        int bestDist = Integer.MAX_VALUE;
+        for (int i = 0; i < colors.length; i++) {
+            int dr = r - ((colors[i] >>> 16) & 0xFF);
+            int dg = g - ((colors[i] >>> 8) & 0xFF);
+            int db = b - (colors[i] & 0xFF);
+            int dist = dr * dr + dg * dg + db * db;
+            if (dist < bestDist) {
+                bestDist = dist;
+                best = i;
+            }
+        }
+        return best;
+    }
+}
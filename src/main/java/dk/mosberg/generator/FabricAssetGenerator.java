@@ -1,39 +1,395 @@
 package dk.mosberg.generator;
 
+import java.awt.image.BufferedImage;
+import java.io.IOException;
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import com.google.gson.JsonObject;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 public final class FabricAssetGenerator {
 
     private final GeneratorConfig config;
     private final AssetWriter writer;
+    private final BuildManifest manifest;
+    private final RecolorSources recolor;
+    private final ChangedInputs changes;
+    private final TextureIndex textures;
+    private final AtomicInteger generated = new AtomicInteger();
+    private final AtomicInteger upToDate = new AtomicInteger();
 
-    public FabricAssetGenerator(GeneratorConfig config, AssetWriter writer) {
+    /** Writes the files of one output template for a material and adds its lang entries. */
+    @FunctionalInterface
+    private interface Emitter {
+        void emit(String id, String name, List<Path> outputs, Map<String, String> lang)
+                throws Exception;
+    }
+
+    /**
+     * What a category's asset rule compiles to: whether its texture is a block texture, and the
+     * emitters to run.
+     */
+    private record Dispatch(boolean block, List<Emitter> emitters) {
+    }
+
+    private final Map<String, Dispatch> dispatch = new HashMap<>();
+    private final Dispatch fallback;
+
+    public FabricAssetGenerator(GeneratorConfig config, AssetWriter writer) throws IOException {
+        this(config, writer, BuildManifest.empty(), RecolorSources.empty());
+    }
+
+    /**
+     * A generator with the built-in asset rules.
+     */
+    public FabricAssetGenerator(GeneratorConfig config, AssetWriter writer,
+            BuildManifest manifest, RecolorSources recolor) throws IOException {
+        this(config, writer, manifest, recolor, ChangedInputs.UNKNOWN,
+                TextureIndex.scan(config.inputDir()), AssetRules.defaults());
+    }
+
+    public FabricAssetGenerator(GeneratorConfig config, AssetWriter writer,
+            BuildManifest manifest, RecolorSources recolor, ChangedInputs changes,
+            TextureIndex textures, AssetRules rules) {
         this.config = config;
         this.writer = writer;
+        this.manifest = manifest;
+        this.recolor = recolor;
+        this.changes = changes;
+        this.textures = textures;
+
+        Emitters emitters = emitters(config.modId());
+        for (Map.Entry<String, List<AssetRules.Template>> e : rules.categories().entrySet())
+            dispatch.put(e.getKey(), compile(e.getValue(), emitters));
+        this.fallback = compile(rules.fallback(), emitters);
+    }
+
+    /** One emitter per template, plus the full block model that a slab on its own needs. */
+    private record Emitters(Map<AssetRules.Template, Emitter> byTemplate, Emitter fullModel) {
+    }
+
+    private static Dispatch compile(List<AssetRules.Template> templates, Emitters emitters) {
+        boolean fullBlock = templates.contains(AssetRules.Template.CUBE_ALL)
+                || templates.contains(AssetRules.Template.PILLAR);
+        List<Emitter> out = new ArrayList<>();
+        for (AssetRules.Template t : templates) {
+            out.add(emitters.byTemplate().get(t));
+            // The double slab shows the full block; write its model if nothing else does.
+            if (t == AssetRules.Template.SLAB && !fullBlock)
+                out.add(emitters.fullModel());
+        }
+        return new Dispatch(templates.get(0).block(), List.copyOf(out));
+    }
+
+    /**
+     * One emitter per template. Per-material JSON is the same document with a different id, so
+     * each file is rendered from a byte template compiled here once.
+     */
+    private Emitters emitters(String modid) {
+        String slot = JsonTemplate.SLOT;
+        JsonTemplate cubeAllModel = writer.template(MinecraftFormatUtils.cubeAllBlockModel(modid,
+                slot));
+        JsonTemplate blockItem = writer.template(MinecraftFormatUtils.blockItemModel(modid, slot));
+        Map<AssetRules.Template, Emitter> out = new EnumMap<>(AssetRules.Template.class);
+        Emitter fullModel = (id, name, outputs, lang) ->
+                writeJson(AssetsPaths.modelBlock(modid, id), cubeAllModel, id, outputs);
+
+        JsonTemplate singleton = writer.template(
+                MinecraftFormatUtils.singletonBlockstate(modid, "block/" + slot));
+        out.put(AssetRules.Template.CUBE_ALL, (id, name, outputs, lang) -> {
+            writeJson(AssetsPaths.blockstate(modid, id), singleton, id, outputs);
+            fullModel.emit(id, name, outputs, lang);
+            writeJson(AssetsPaths.modelItem(modid, id), blockItem, id, outputs);
+            lang.put("block." + modid + "." + id, name);
+        });
+
+        JsonTemplate axis = writer.template(MinecraftFormatUtils.axisBlockstate(modid, slot));
+        JsonTemplate column =
+                writer.template(MinecraftFormatUtils.cubeColumnBlockModel(modid, slot));
+        out.put(AssetRules.Template.PILLAR, (id, name, outputs, lang) -> {
+            writeJson(AssetsPaths.blockstate(modid, id), axis, id, outputs);
+            writeJson(AssetsPaths.modelBlock(modid, id), column, id, outputs);
+            writeJson(AssetsPaths.modelItem(modid, id), blockItem, id, outputs);
+            lang.put("block." + modid + "." + id, name);
+        });
+
+        JsonTemplate slabState = writer.template(MinecraftFormatUtils.slabBlockstate(modid,
+                slot + "_slab", slot + "_slab_top", slot));
+        JsonTemplate slab = sided("slab", modid);
+        JsonTemplate slabTop = sided("slab_top", modid);
+        JsonTemplate slabItem =
+                writer.template(MinecraftFormatUtils.blockItemModel(modid, slot + "_slab"));
+        out.put(AssetRules.Template.SLAB, (id, name, outputs, lang) -> {
+            writeJson(AssetsPaths.blockstate(modid, id + "_slab"), slabState, id, outputs);
+            writeJson(AssetsPaths.modelBlock(modid, id + "_slab"), slab, id, outputs);
+            writeJson(AssetsPaths.modelBlock(modid, id + "_slab_top"), slabTop, id, outputs);
+            writeJson(AssetsPaths.modelItem(modid, id + "_slab"), slabItem, id, outputs);
+            lang.put("block." + modid + "." + id + "_slab", name + " Slab");
+        });
+
+        JsonTemplate stairsState = writer.template(MinecraftFormatUtils.stairsBlockstate(modid,
+                slot + "_stairs", slot + "_stairs_inner", slot + "_stairs_outer"));
+        JsonTemplate stairs = sided("stairs", modid);
+        JsonTemplate inner = sided("inner_stairs", modid);
+        JsonTemplate outer = sided("outer_stairs", modid);
+        JsonTemplate stairsItem =
+                writer.template(MinecraftFormatUtils.blockItemModel(modid, slot + "_stairs"));
+        out.put(AssetRules.Template.STAIRS, (id, name, outputs, lang) -> {
+            writeJson(AssetsPaths.blockstate(modid, id + "_stairs"), stairsState, id, outputs);
+            writeJson(AssetsPaths.modelBlock(modid, id + "_stairs"), stairs, id, outputs);
+            writeJson(AssetsPaths.modelBlock(modid, id + "_stairs_inner"), inner, id, outputs);
+            writeJson(AssetsPaths.modelBlock(modid, id + "_stairs_outer"), outer, id, outputs);
+            writeJson(AssetsPaths.modelItem(modid, id + "_stairs"), stairsItem, id, outputs);
+            lang.put("block." + modid + "." + id + "_stairs", name + " Stairs");
+        });
+
+        String[] paneParts = {"post", "side", "side_alt", "noside", "noside_alt"};
+        JsonTemplate paneState = writer.template(MinecraftFormatUtils.paneBlockstate(modid,
+                slot + "_pane_post", slot + "_pane_side", slot + "_pane_side_alt",
+                slot + "_pane_noside", slot + "_pane_noside_alt"));
+        JsonTemplate[] paneModels = new JsonTemplate[paneParts.length];
+        for (int i = 0; i < paneParts.length; i++) {
+            paneModels[i] = writer.template(MinecraftFormatUtils.paneBlockModel(
+                    "template_glass_pane_" + paneParts[i], modid, slot,
+                    !paneParts[i].startsWith("noside")));
+        }
+        JsonTemplate paneItem =
+                writer.template(MinecraftFormatUtils.blockTextureItemModel(modid, slot));
+        out.put(AssetRules.Template.PANE, (id, name, outputs, lang) -> {
+            writeJson(AssetsPaths.blockstate(modid, id + "_pane"), paneState, id, outputs);
+            for (int i = 0; i < paneParts.length; i++) {
+                writeJson(AssetsPaths.modelBlock(modid, id + "_pane_" + paneParts[i]),
+                        paneModels[i], id, outputs);
+            }
+            writeJson(AssetsPaths.modelItem(modid, id + "_pane"), paneItem, id, outputs);
+            lang.put("block." + modid + "." + id + "_pane", name + " Pane");
+        });
+
+        JsonTemplate generatedItem =
+                writer.template(MinecraftFormatUtils.generatedItemModel(modid, slot));
+        out.put(AssetRules.Template.GENERATED_ITEM, (id, name, outputs, lang) -> {
+            writeJson(AssetsPaths.modelItem(modid, id), generatedItem, id, outputs);
+            lang.put("item." + modid + "." + id, name);
+        });
+        return new Emitters(out, fullModel);
+    }
+
+    private JsonTemplate sided(String parent, String modid) {
+        return writer.template(
+                MinecraftFormatUtils.sidedBlockModel(parent, modid, JsonTemplate.SLOT));
     }
 
     public void generate(List<MaterialDefinition> materials) throws Exception {
-        for (MaterialDefinition mat : materials) {
-            generateMaterial(mat);
+        generate(sink -> {
+            for (MaterialDefinition mat : materials)
+                sink.accept(mat, null);
+        });
+    }
+
+    /**
+     * Generates the loader's materials while they load: each one goes to the generation threads
+     * as soon as it is merged, and its files to the write queue as soon as they are rendered.
+     */
+    public void generate(AssetConfigLoader loader) throws Exception {
+        generate(loader::load);
+    }
+
+    @FunctionalInterface
+    private interface MaterialSource {
+        void load(AssetConfigLoader.MaterialSink sink) throws Exception;
+    }
+
+    private void generate(MaterialSource source) throws Exception {
+        if (config.threads() > 1)
+            Log.info("Generating materials on " + config.threads() + " threads");
+
+        Set<String> liveIds;
+        try (Stage stage = new Stage(config.threads())) {
+            source.load(stage::submit);
+            stage.await();
+            liveIds = stage.ids();
+        }
+
+        int pruned = pruneRemoved(liveIds);
+        manifest.retainTextures(textures.paths());
+        Log.info("Materials: " + generated.get() + " generated, " + upToDate.get()
+                + " up-to-date, " + pruned + " removed");
+
+        List<String> unused = textures.unused();
+        for (String rel : unused)
+            Log.info("Unused texture (no material references it): " + rel);
+        Metrics.add(Metrics.Counter.TEXTURES_UNUSED, unused.size());
+    }
+
+    /**
+     * The generation stage: materials come in, in input order, and go through a bounded queue to
+     * the generation threads, so a slow stage further on (generation itself, or the write queue
+     * behind it) blocks the loader instead of letting materials pile up. Lang entries are merged
+     * in input order as materials finish, so the lang file is byte-identical to a sequential run.
+     * Once generated, a material is dropped; only its id (and last position) is kept for pruning.
+     */
+    private final class Stage implements AutoCloseable {
+
+        private record Item(int ordinal, MaterialDefinition material, String sourceFile) {
+        }
+
+        private static final int QUEUE_CAPACITY = 64;
+        private static final Item STOP = new Item(-1, null, null);
+
+        private final BlockingQueue<Item> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+        private final Thread[] workers;
+        private final Map<String, Integer> lastOrdinal = new HashMap<>();
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        // Guarded by finished: lang of materials done ahead of an earlier one, and the count
+        // merged so far.
+        private final Map<Integer, Map<String, String>> finished = new HashMap<>();
+        private int merged;
+        private int submitted;
+
+        Stage(int threads) {
+            workers = new Thread[Math.max(1, threads)];
+            for (int i = 0; i < workers.length; i++)
+                workers[i] = Thread.ofPlatform().name("generator-gen-" + i).start(this::drain);
+        }
+
+        void submit(MaterialDefinition mat, String sourceFile) throws Exception {
+            rethrowFailure();
+            int ordinal = submitted++;
+            Integer previous = lastOrdinal.put(mat.id(), ordinal);
+            if (previous != null) {
+                // The same id again writes the same files: let the earlier one finish (and merge
+                // its lang) first so the last one wins. Its manifest entry is from this run, so
+                // the changed-inputs shortcut doesn't apply.
+                awaitMerged(previous + 1);
+                sourceFile = null;
+            }
+            queue.put(new Item(ordinal, mat, sourceFile));
+        }
+
+        /** Blocks until every submitted material is generated, then rethrows the first failure. */
+        void await() throws Exception {
+            awaitMerged(submitted);
+        }
+
+        Set<String> ids() {
+            return lastOrdinal.keySet();
+        }
+
+        @Override
+        public void close() throws InterruptedException {
+            // Normally empty by now; after a failure the rest is lost anyway.
+            queue.clear();
+            for (Thread worker : workers)
+                queue.put(STOP);
+            for (Thread worker : workers)
+                worker.join();
+        }
+
+        private void drain() {
+            while (true) {
+                Item item;
+                try {
+                    item = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (item == STOP)
+                    return;
+
+                try {
+                    if (failure.get() == null)
+                        merge(item.ordinal(), generateMaterial(item.material(), item.sourceFile()));
+                } catch (Throwable t) {
+                    failure.compareAndSet(null, t);
+                    synchronized (finished) {
+                        finished.notifyAll();
+                    }
+                }
+            }
+        }
+
+        private void merge(int ordinal, Map<String, String> lang) {
+            synchronized (finished) {
+                finished.put(ordinal, lang);
+                Map<String, String> next;
+                while ((next = finished.remove(merged)) != null) {
+                    writer.mergeLang(config.modId(), config.lang(), next);
+                    merged++;
+                }
+                finished.notifyAll();
+            }
+        }
+
+        private void awaitMerged(int count) throws Exception {
+            synchronized (finished) {
+                while (merged < count && failure.get() == null)
+                    finished.wait();
+            }
+            rethrowFailure();
+        }
+
+        private void rethrowFailure() throws Exception {
+            Throwable t = failure.get();
+            if (t == null)
+                return;
+            if (t instanceof Error e)
+                throw e;
+            throw t instanceof Exception e ? e : new IllegalStateException(t);
         }
     }
 
-    private void generateMaterial(MaterialDefinition mat) throws Exception {
+    /**
+     * Deletes the outputs and lang entries of materials that were in the manifest but are no longer
+     * part of the input.
+     */
+    private int pruneRemoved(Set<String> liveIds) throws Exception {
+        List<BuildManifest.Entry> removed = manifest.retainOnly(liveIds);
+        for (BuildManifest.Entry e : removed) {
+            for (Path p : e.outputs())
+                writer.delete(p);
+            writer.removeLang(config.modId(), config.lang(), e.lang().keySet());
+        }
+        return removed.size();
+    }
+
+    private Map<String, String> generateMaterial(MaterialDefinition mat, String sourceFile)
+            throws Exception {
+        try (var span = Metrics.span(Metrics.Phase.MATERIAL, mat.id())) {
+            return writeMaterial(mat, sourceFile);
+        }
+    }
+
+    /**
+     * Writes all per-material files and returns the lang entries the material contributes. Skips
+     * the writes when the manifest says the material's inputs are unchanged.
+     *
+     * @param sourceFile the material's input-relative definition file for the changed-inputs
+     *        shortcut, or null to always hash
+     */
+    private Map<String, String> writeMaterial(MaterialDefinition mat, String sourceFile)
+            throws Exception {
         String id = mat.id();
         String modid = config.modId();
 
-        // Decide whether this material is primarily a block or item by category heuristics.
-        boolean looksLikeBlock =
-                mat.category().contains("block") || mat.category().contains("glass")
-                        || mat.category().contains("wood") || mat.category().contains("plank");
+        // The category's asset rule decides what gets written and whether the texture is a block
+        // or item texture.
+        Dispatch rule = dispatch.getOrDefault(mat.category(), fallback);
+        boolean looksLikeBlock = rule.block();
 
         // Texture selection:
-        // 1) explicit override in material JSON (resource-relative)
-        // 2) default convention: textures/material/<category>/<id>.png inside input dir
+        // 1) explicit override in material JSON (resource-relative), copied verbatim
+        // 2) properties.base_texture: a shared base texture indexed against properties.base_ramp
+        //    and recolored with the ramp named by 'palette'
+        // 3) default convention: textures/material/<category>/<id>.png inside input dir, recolored
+        //    through the palette map named by 'palette' if there is one
         Path inputRoot = config.inputDir();
         String textureRel = null;
 
@@ -45,61 +401,122 @@ public final class FabricAssetGenerator {
             }
         }
 
-        if (textureRel == null) {
+        PaletteMap palette = null;
+        ColorRamp baseRamp = null;
+        ColorRamp targetRamp = null;
+        String recolorHash = "";
+        if (textureRel == null && mat.properties() != null
+                && mat.properties().has("base_texture")) {
+            textureRel = mat.properties().get("base_texture").getAsString();
+            String baseRampId = mat.properties().has("base_ramp")
+                    ? mat.properties().get("base_ramp").getAsString()
+                    : null;
+            baseRamp = recolor.ramps().get(baseRampId);
+            targetRamp = recolor.ramps().get(mat.palette());
+            if (baseRamp == null || targetRamp == null) {
+                throw new IllegalArgumentException("Material '" + id + "' uses base_texture but"
+                        + " ramps are missing (base_ramp=" + baseRampId + ", palette="
+                        + mat.palette() + ")");
+            }
+            recolorHash = baseRamp.hash() + targetRamp.hash();
+        } else if (textureRel == null) {
             textureRel = "textures/material/" + mat.category() + "/" + id + ".png";
+            palette = recolor.palettes().get(mat.palette());
+            if (palette != null)
+                recolorHash = palette.hash();
+        }
+
+        TextureIndex.Texture texture = textures.lookup(textureRel);
+        if (changes.unchanged(sourceFile, textureRel)
+                && manifest.isUpToDate(id, config.outputDir())) {
+            upToDate.incrementAndGet();
+            Metrics.count(Metrics.Counter.MATERIALS_UP_TO_DATE);
+            return manifest.entry(id).lang();
         }
+        String hash = BuildManifest.materialHash(mat, textureRel,
+                texture == null ? "" : manifest.textureDigest(texture), recolorHash);
+        if (manifest.isUpToDate(id, hash, config.outputDir())) {
+            upToDate.incrementAndGet();
+            Metrics.count(Metrics.Counter.MATERIALS_UP_TO_DATE);
+            return manifest.entry(id).lang();
+        }
+
+        List<Path> outputs = new ArrayList<>();
 
         // Copy texture if exists. If it doesn't exist, still generate JSON; user can supply texture
         // later.
-        if (FileUtils.exists(inputRoot.resolve(textureRel))) {
-            if (looksLikeBlock) {
-                writer.copyPng(inputRoot.resolve(textureRel), AssetsPaths.textureBlock(modid, id));
+        if (texture != null) {
+            Path textureOut = looksLikeBlock ? AssetsPaths.textureBlock(modid, id)
+                    : AssetsPaths.textureItem(modid, id);
+            if (targetRamp != null) {
+                RampIndexedTexture base = recolor.baseTextures().get(texture, baseRamp);
+                BufferedImage recolored;
+                try (var span = Metrics.span(Metrics.Phase.RECOLOR, id)) {
+                    recolored = base.recolor(targetRamp);
+                }
+                writer.writePng(textureOut, recolored);
+            } else if (palette != null) {
+                BufferedImage source;
+                try (var span = Metrics.span(Metrics.Phase.TEXTURE_DECODE, texture.file())) {
+                    source = TextureRecolorer.read(texture.file());
+                }
+                BufferedImage recolored;
+                try (var span = Metrics.span(Metrics.Phase.RECOLOR, id)) {
+                    recolored = palette.apply(source);
+                }
+                writer.writePng(textureOut, recolored);
             } else {
-                writer.copyPng(inputRoot.resolve(textureRel), AssetsPaths.textureItem(modid, id));
+                writer.copyPng(texture, textureOut);
             }
+            outputs.add(textureOut);
         } else {
             Log.warn("Missing texture (skipped copy): " + inputRoot.resolve(textureRel));
         }
 
-        if (looksLikeBlock) {
-            writeBlockAssets(modid, id, mat.name());
-        } else {
-            writeItemAssets(modid, id, mat.name());
-        }
+        Map<String, String> lang = new LinkedHashMap<>();
+        for (Emitter emitter : rule.emitters())
+            emitter.emit(id, mat.name(), outputs, lang);
 
         if (mat.recipe() != null) {
             // Write recipe JSON exactly as provided (schema enforces common structure).
-            writer.writeJson(DataPaths.recipe(modid, id), mat.recipe());
+            Path recipe = DataPaths.recipe(modid, id);
+            writer.writeJson(recipe, mat.recipe());
+            outputs.add(recipe);
         }
-    }
 
-    private void writeBlockAssets(String modid, String id, String displayName) throws Exception {
-        // blockstate
-        JsonObject blockstate = MinecraftFormatUtils.singletonBlockstate(modid, "block/" + id);
-        writer.writeJson(AssetsPaths.blockstate(modid, id), blockstate);
+        BuildManifest.Entry previous = manifest.entry(id);
+        manifest.record(id, new BuildManifest.Entry(hash, List.copyOf(outputs), lang));
+        if (previous != null)
+            removeStale(previous, outputs, lang);
 
-        // block model
-        JsonObject blockModel = MinecraftFormatUtils.cubeAllBlockModel(modid, id);
-        writer.writeJson(AssetsPaths.modelBlock(modid, id), blockModel);
+        generated.incrementAndGet();
+        Metrics.count(Metrics.Counter.MATERIALS_GENERATED);
+        return lang;
+    }
 
-        // item model (points to block model)
-        JsonObject itemModel = MinecraftFormatUtils.blockItemModel(modid, id);
-        writer.writeJson(AssetsPaths.modelItem(modid, id), itemModel);
+    /**
+     * A regenerated material may no longer produce everything it did last time (e.g. it moved from
+     * a block category to an item category); drop what it left behind.
+     */
+    private void removeStale(BuildManifest.Entry previous, List<Path> outputs,
+            Map<String, String> lang) throws Exception {
+        for (Path p : previous.outputs()) {
+            if (!outputs.contains(p))
+                writer.delete(p);
+        }
 
-        // lang entry
-        Map<String, String> lang = new LinkedHashMap<>();
-        lang.put("block." + modid + "." + id, displayName);
-        writer.mergeLang(modid, config.lang(), lang);
+        List<String> staleKeys = new ArrayList<>();
+        for (String key : previous.lang().keySet()) {
+            if (!lang.containsKey(key))
+                staleKeys.add(key);
+        }
+        if (!staleKeys.isEmpty())
+            writer.removeLang(config.modId(), config.lang(), staleKeys);
     }
 
-    private void writeItemAssets(String modid, String id, String displayName) throws Exception {
-        // item model (generated)
-        JsonObject itemModel = MinecraftFormatUtils.generatedItemModel(modid, id);
-        writer.writeJson(AssetsPaths.modelItem(modid, id), itemModel);
-
-        // lang entry
-        Map<String, String> lang = new LinkedHashMap<>();
-        lang.put("item." + modid + "." + id, displayName);
-        writer.mergeLang(modid, config.lang(), lang);
+    private void writeJson(Path rel, JsonTemplate template, String id, List<Path> outputs)
+            throws Exception {
+        writer.writeTemplate(rel, template, id);
+        outputs.add(rel);
     }
 }
@@ -2,21 +2,34 @@ package dk.mosberg.generator;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.MessageDigest;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HexFormat;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public final class FileUtils {
 
     public static final Gson GSON = new Gson();
     public static final Gson PRETTY_GSON = new GsonBuilder().setPrettyPrinting().create();
 
+    // Per-thread read buffer for small input files; larger files get a one-off buffer.
+    private static final int POOLED_BUFFER_MAX = 1 << 20;
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(16 * 1024));
+
     private FileUtils() {}
 
     public static boolean exists(Path p) {
@@ -31,25 +44,199 @@ public final class FileUtils {
         return Files.readAllBytes(path);
     }
 
+    /**
+     * Reads and parses a JSON file with a single read into a pooled per-thread buffer.
+     */
+    public static JsonElement readJson(Path path) throws IOException {
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE - 8)
+                throw new IOException("File too large: " + path);
+
+            ByteBuffer buf = READ_BUFFER.get();
+            if (buf.capacity() < size) {
+                buf = ByteBuffer.allocate((int) Math.max(size, buf.capacity() * 2L));
+                if (buf.capacity() <= POOLED_BUFFER_MAX)
+                    READ_BUFFER.set(buf);
+            }
+            buf.clear();
+            while (ch.read(buf) > 0 && buf.hasRemaining()) {
+                // keep reading until EOF or the buffer is full
+            }
+            String text = new String(buf.array(), 0, buf.position(), StandardCharsets.UTF_8);
+            return JsonParser.parseString(text);
+        }
+    }
+
     public static void ensureParent(Path file) throws IOException {
         Path parent = file.getParent();
         if (parent != null)
             Files.createDirectories(parent);
     }
 
-    public static void writeBytesIfChanged(Path file, byte[] bytes) throws Exception {
-        ensureParent(file);
+    /**
+     * Directories known to exist, so repeated writes into one directory skip
+     * {@code createDirectories}. Only valid while nothing deletes directories below it, i.e. for
+     * the writes of a single run.
+     */
+    public static final class DirCache {
+        private final Set<Path> known = ConcurrentHashMap.newKeySet();
+
+        public void ensureParent(Path file) throws IOException {
+            Path parent = file.getParent();
+            if (parent != null && !known.contains(parent)) {
+                Files.createDirectories(parent);
+                known.add(parent);
+            }
+        }
+    }
+
+    private static void ensureParent(Path file, DirCache dirs) throws IOException {
+        if (dirs != null)
+            dirs.ensureParent(file);
+        else
+            ensureParent(file);
+    }
+
+    public static boolean writeBytesIfChanged(Path file, byte[] bytes) throws Exception {
+        return writeBytesIfChanged(file, bytes, null);
+    }
+
+    /**
+     * Writes {@code bytes} unless the file already holds exactly them; returns whether it wrote.
+     * {@code dirs} may be null.
+     */
+    public static boolean writeBytesIfChanged(Path file, byte[] bytes, DirCache dirs)
+            throws Exception {
+        ensureParent(file, dirs);
+
+        long size = sizeOrMissing(file);
+        if (size >= 0) {
+            if (size == bytes.length && sameContent(file, bytes)) {
+                Log.debug("unchanged {}", file);
+                return false;
+            }
+            // Replace rather than truncate: the old file may be a hardlink to an input texture.
+            Files.delete(file);
+        }
+
+        Files.write(file, bytes, StandardOpenOption.CREATE_NEW);
+        if (Log.isDebugEnabled())
+            Log.debug("wrote     {} (sha1={})", file, sha1(bytes));
+        return true;
+    }
+
+    /**
+     * Copies {@code from} to {@code to} with {@link FileChannel#transferTo} unless {@code to}
+     * already has the same content. The copy gets the source's mtime, so on later runs an equal
+     * size and mtime is enough to skip it without reading either file; otherwise the files are
+     * compared with an early-exit {@link Files#mismatch}. {@code fromAttrs} are the source's
+     * attributes as the caller already knows them, so the source is not stat'ed again. Returns
+     * whether it copied.
+     */
+    public static boolean copyIfChanged(Path from, BasicFileAttributes fromAttrs, Path to,
+            DirCache dirs) throws IOException {
+        ensureParent(to, dirs);
 
-        if (Files.exists(file)) {
-            byte[] old = Files.readAllBytes(file);
-            if (MessageDigest.isEqual(old, bytes)) {
-                Log.info("unchanged " + file);
-                return;
+        BasicFileAttributes toAttrs = attributesOrMissing(to);
+        if (toAttrs != null) {
+            if (!sameFile(from, fromAttrs, to, toAttrs)
+                    && sameContent(from, fromAttrs, to, toAttrs)) {
+                Log.debug("unchanged {}", to);
+                return false;
             }
+            Files.delete(to);
         }
 
-        Files.write(file, bytes, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
-        Log.info("wrote     " + file + " (sha1=" + sha1(bytes) + ")");
+        try (FileChannel in = FileChannel.open(from, StandardOpenOption.READ);
+                FileChannel out = FileChannel.open(to, StandardOpenOption.WRITE,
+                        StandardOpenOption.CREATE_NEW)) {
+            long size = in.size();
+            long pos = 0;
+            while (pos < size)
+                pos += in.transferTo(pos, size - pos, out);
+        }
+        Files.setLastModifiedTime(to, fromAttrs.lastModifiedTime());
+        Log.debug("copied    {}", to);
+        return true;
+    }
+
+    /**
+     * Makes {@code to} a hardlink to {@code from} unless it already is one. Throws if the file
+     * system can't link the two paths (e.g. they are on different devices). Returns whether it
+     * made a new link.
+     */
+    public static boolean linkIfChanged(Path from, BasicFileAttributes fromAttrs, Path to,
+            DirCache dirs) throws IOException {
+        ensureParent(to, dirs);
+
+        BasicFileAttributes toAttrs = attributesOrMissing(to);
+        if (toAttrs != null) {
+            if (sameFile(from, fromAttrs, to, toAttrs)) {
+                Log.debug("unchanged {}", to);
+                return false;
+            }
+            Files.delete(to);
+        }
+        Files.createLink(to, from);
+        Log.debug("linked    {}", to);
+        return true;
+    }
+
+    /** One stat for existence, size and mtime; null when the file is missing. */
+    private static BasicFileAttributes attributesOrMissing(Path file) throws IOException {
+        try {
+            return Files.readAttributes(file, BasicFileAttributes.class);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /** Compares file keys (device and inode) where the platform has them. */
+    private static boolean sameFile(Path a, BasicFileAttributes aAttrs, Path b,
+            BasicFileAttributes bAttrs) throws IOException {
+        Object key = aAttrs.fileKey();
+        return key != null ? key.equals(bAttrs.fileKey()) : Files.isSameFile(a, b);
+    }
+
+    /**
+     * One stat instead of an exists check followed by a size lookup; -1 when the file is missing.
+     */
+    private static long sizeOrMissing(Path file) throws IOException {
+        try {
+            return Files.size(file);
+        } catch (NoSuchFileException e) {
+            return -1;
+        }
+    }
+
+    private static boolean sameContent(Path a, BasicFileAttributes aAttrs, Path b,
+            BasicFileAttributes bAttrs) throws IOException {
+        if (aAttrs.size() != bAttrs.size())
+            return false;
+        if (aAttrs.lastModifiedTime().equals(bAttrs.lastModifiedTime()))
+            return true;
+        return Files.mismatch(a, b) == -1;
+    }
+
+    /**
+     * Streams {@code file} through the pooled read buffer and stops at the first differing chunk.
+     */
+    private static boolean sameContent(Path file, byte[] bytes) throws IOException {
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer buf = READ_BUFFER.get();
+            int offset = 0;
+            while (true) {
+                buf.clear();
+                int n = ch.read(buf);
+                if (n < 0)
+                    return offset == bytes.length;
+                if (offset + n > bytes.length || Arrays.mismatch(buf.array(), 0, n, bytes, offset,
+                        offset + n) != -1)
+                    return false;
+                offset += n;
+            }
+        }
     }
 
     private static String sha1(byte[] bytes) throws Exception {
@@ -72,6 +259,13 @@ public final class FileUtils {
         return out;
     }
 
+    public static boolean deleteIfExists(Path file) throws IOException {
+        if (!Files.deleteIfExists(file))
+            return false;
+        Log.debug("deleted   {}", file);
+        return true;
+    }
+
     public static void deleteDirectory(Path dir) throws IOException {
         if (!Files.exists(dir))
             return;
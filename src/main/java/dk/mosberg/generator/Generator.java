@@ -1,11 +1,34 @@
 package dk.mosberg.generator;
 
+import com.google.gson.JsonObject;
+
 import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
 
 public final class Generator {
 
     public static void main(String[] args) {
+        int exitCode = execute(args);
+        if (exitCode != 0)
+            System.exit(exitCode);
+    }
+
+    /**
+     * Runs the generator like {@link #main} but returns the exit code instead of exiting, so build
+     * tools can call it in their own JVM: 0 on success, 1 when generation failed, 2 for bad
+     * arguments, 3 when {@code --verify} found differences. In watch mode it only returns once
+     * watching stops.
+     */
+    public static int execute(String[] args) {
         GeneratorConfig config;
         try {
             config = GeneratorConfig.fromArgs(args);
@@ -13,21 +36,41 @@ public final class Generator {
             System.err.println("Error: " + e.getMessage());
             System.err.println();
             GeneratorConfig.printUsage(System.err);
-            System.exit(2);
-            return;
+            return 2;
         }
 
         if (config.help()) {
             GeneratorConfig.printUsage(System.out);
-            return;
+            return 0;
+        }
+
+        if (config.verify() && (config.batch() != null || config.watch()
+                || config.archive() != null || config.dryRun() || config.clean()
+                || config.changed() != null)) {
+            System.err.println("Error: --verify can't be combined with --batch, --watch,"
+                    + " --archive, --dry-run, --clean or --changed.");
+            return 2;
+        }
+
+        if (config.batch() != null) {
+            if (config.watch() || config.archive() != null || config.changed() != null) {
+                System.err.println("Error: --batch can't be combined with --watch, --archive or"
+                        + " --changed.");
+                return 2;
+            }
+            return runBatch(config) > 0 ? 1 : 0;
+        }
+
+        if (config.watch() && config.changed() != null) {
+            System.err.println("Error: --changed can't be combined with --watch.");
+            return 2;
         }
 
         if (config.modId().isBlank()) {
             System.err.println("Error: --modid is required.");
             System.err.println();
             GeneratorConfig.printUsage(System.err);
-            System.exit(2);
-            return;
+            return 2;
         }
 
         Log.info("═══════════════════════════════════════");
@@ -38,28 +81,307 @@ public final class Generator {
         Log.info("Output: " + config.outputDir().toAbsolutePath());
         Log.info("Strict: " + config.strict());
         Log.info("DryRun: " + config.dryRun());
+        Log.info("Verify: " + config.verify());
         Log.info("Clean:  " + config.clean());
+        Log.info("Full:   " + config.full());
+
+        Log.info("Watch:  " + config.watch());
+        if (config.archive() != null)
+            Log.info("Archive: " + config.archive().toAbsolutePath());
+        if (config.report() != null)
+            Log.info("Report: " + config.report().toAbsolutePath());
 
+        if (config.verify()) {
+            try {
+                return verify(config);
+            } catch (Exception e) {
+                Log.error("Verification failed: " + e.getMessage(), e);
+                return 1;
+            }
+        }
+
+        SchemaValidator validator;
+        BuildManifest manifest;
+        BaseTextureCache baseTextures = new BaseTextureCache();
         try {
             if (config.clean()) {
                 FileUtils.deleteDirectory(config.outputDir());
             }
 
             Path schemaDir = config.inputDir().resolve("schemas");
-            SchemaValidator validator = new SchemaValidator(schemaDir, config.strict());
-            AssetConfigLoader loader = new AssetConfigLoader(config.inputDir(), validator);
+            validator = new SchemaValidator(schemaDir, config.strict());
+            manifest = BuildManifest.load(config.outputDir());
+
+            run(config, validator, manifest, baseTextures, config.full());
+        } catch (Exception e) {
+            Log.error("Generation failed: " + e.getMessage(), e);
+            if (!config.watch())
+                return 1;
+            validator = new SchemaValidator(config.inputDir().resolve("schemas"), config.strict());
+            manifest = BuildManifest.load(config.outputDir());
+        }
 
-            List<MaterialDefinition> materials = loader.loadMaterials();
+        if (!config.watch())
+            return 0;
 
-            AssetWriter writer = new AssetWriter(config.outputDir(), config.dryRun());
+        // Keep the JVM, the schema cache, decoded base textures and the in-memory manifest warm
+        // between runs. The manifest limits each rerun to the materials whose inputs changed.
+        SchemaValidator warmValidator = validator;
+        BuildManifest warmManifest = manifest;
+        try {
+            new WatchMode(config).watch(schemasChanged -> {
+                if (schemasChanged) {
+                    Log.info("Schemas changed; revalidating everything.");
+                    warmValidator.clearCache();
+                }
+                try {
+                    run(config, warmValidator, warmManifest, baseTextures, false);
+                } catch (Exception e) {
+                    Log.error("Generation failed: " + e.getMessage(), e);
+                }
+            });
+        } catch (Exception e) {
+            Log.error("Watch mode failed: " + e.getMessage(), e);
+            return 1;
+        }
+        return 0;
+    }
 
-            FabricAssetGenerator generator = new FabricAssetGenerator(config, writer);
-            generator.generate(materials);
+    /**
+     * One load/generate/write pass, streamed: materials are generated and written while later ones
+     * are still loading. Schema changes are picked up through the run fingerprint, which makes the
+     * manifest treat every material as stale.
+     */
+    static void run(GeneratorConfig config, SchemaValidator validator,
+            BuildManifest manifest, BaseTextureCache baseTextures, boolean full) throws Exception {
+        Metrics.reset();
+        AssetConfigLoader loader =
+                new AssetConfigLoader(config.inputDir(), validator, config.threads());
+        RecolorSources recolor = recolorSources(config.inputDir(), validator, baseTextures);
+        ChangedInputs changes = config.changed() == null ? ChangedInputs.UNKNOWN
+                : ChangedInputs.load(config.changed());
+        generate(config, manifest, loader, recolor, AssetRules.load(config.inputDir(), validator),
+                changes, full);
+        finish(config);
+        Log.info("✓ Generation complete.");
+    }
 
-            Log.info("✓ Generation complete.");
+    /**
+     * Generates in memory what a {@code --full} run would write and compares it with the output
+     * dir, whose files are hashed meanwhile. Returns 0 if they match and 3 if they don't.
+     */
+    static int verify(GeneratorConfig config) throws Exception {
+        Metrics.reset();
+        OutputVerifier.Report report = compareOutput(config);
+        report.added().forEach(p -> Log.warn("added   " + p));
+        report.changed().forEach(p -> Log.warn("changed " + p));
+        report.missing().forEach(p -> Log.warn("missing " + p));
+        report.stale().forEach(p -> Log.warn("stale   " + p));
+        Log.info("Verified " + report.checked() + " files: " + report.added().size()
+                + " added, " + report.changed().size() + " changed, " + report.missing().size()
+                + " missing, " + report.stale().size() + " stale");
+        if (config.report() != null)
+            Metrics.writeReport(config.report(), config);
+        if (!report.clean()) {
+            Log.error("✗ Output differs from what the generator would produce.");
+            return 3;
+        }
+        Log.info("✓ Output is up to date.");
+        return 0;
+    }
+
+    /** The {@code --verify} comparison: what a full run would write against the output dir. */
+    static OutputVerifier.Report compareOutput(GeneratorConfig config) throws Exception {
+        SchemaValidator validator =
+                new SchemaValidator(config.inputDir().resolve("schemas"), config.strict());
+        BuildManifest manifest = BuildManifest.load(config.outputDir());
+        try (OutputVerifier verifier = new OutputVerifier(config.outputDir(), manifest,
+                Math.max(1, config.ioThreads()))) {
+            // Regenerate everything; the manifest still supplies texture digests and tells which
+            // lang keys and outputs belong to materials that are gone.
+            manifest.invalidate();
+            AssetConfigLoader loader =
+                    new AssetConfigLoader(config.inputDir(), validator, config.threads());
+            RecolorSources recolor =
+                    recolorSources(config.inputDir(), validator, new BaseTextureCache());
+            try (AssetWriter writer = AssetWriter.verifying(config, verifier)) {
+                new FabricAssetGenerator(config, writer, manifest, recolor,
+                        ChangedInputs.UNKNOWN, TextureIndex.scan(config.inputDir()),
+                        AssetRules.load(config.inputDir(), validator)).generate(loader);
+                writer.flush();
+            }
+            return verifier.compare();
+        }
+    }
+
+
+    /**
+     * Runs every job of the batch file in this JVM and returns the number of failed jobs. Jobs
+     * share one schema validator per schema dir, the ramps and palettes of each input dir and one
+     * base texture cache. Jobs that write into each other's input or output dirs run one after
+     * another in file order; the rest run in parallel, each still using --threads for its own
+     * materials. Each job keeps its own metrics; the --report file lists them per job.
+     */
+    static int runBatch(GeneratorConfig config) {
+        BatchManifest batch;
+        try {
+            batch = BatchManifest.load(config.batch(), config.lang());
         } catch (Exception e) {
-            Log.error("Generation failed: " + e.getMessage(), e);
-            System.exit(1);
+            Log.error("Batch failed: " + e.getMessage(), e);
+            return 1;
+        }
+
+        List<List<BatchManifest.Job>> groups = batch.independentGroups();
+        Log.info("Batch: " + config.batch().toAbsolutePath() + " (" + batch.jobs().size()
+                + " jobs, " + groups.size() + " independent)");
+
+        List<BatchManifest.Job> jobs = batch.jobs();
+        Map<BatchManifest.Job, Integer> order = new IdentityHashMap<>();
+        for (int i = 0; i < jobs.size(); i++)
+            order.put(jobs.get(i), i);
+        Metrics[] metrics = new Metrics[jobs.size()];
+        JsonObject[] reports = new JsonObject[jobs.size()];
+        long start = System.nanoTime();
+
+        BatchCaches caches = new BatchCaches(config.strict());
+        AtomicInteger failed = new AtomicInteger();
+        int parallel = Math.min(groups.size(), Runtime.getRuntime().availableProcessors());
+        try (ExecutorService pool = Executors.newFixedThreadPool(parallel)) {
+            for (List<BatchManifest.Job> group : groups) {
+                pool.submit(() -> {
+                    for (BatchManifest.Job job : group) {
+                        int i = order.get(job);
+                        GeneratorConfig jobConfig = config.withJob(job.modId(), job.input(),
+                                job.output(), job.lang());
+                        // Jobs run side by side; each counts into its own metrics.
+                        metrics[i] = Metrics.startJob();
+                        try {
+                            runJob(jobConfig, caches);
+                            reports[i] = metrics[i].toJson(jobConfig);
+                        } catch (Exception e) {
+                            failed.incrementAndGet();
+                            Log.error("Job " + job.modId() + " failed: " + e.getMessage(), e);
+                            reports[i] = metrics[i].toJson(jobConfig);
+                            reports[i].addProperty("error", String.valueOf(e.getMessage()));
+                        } finally {
+                            Metrics.endJob();
+                        }
+                    }
+                });
+            }
+        }
+
+        Log.info("Files: " + files(c -> Arrays.stream(metrics).mapToLong(m -> m.counter(c)).sum()));
+        if (config.report() != null) {
+            try {
+                Metrics.writeReport(config.report(),
+                        Metrics.batchReport(config.batch(), start, List.of(reports)));
+            } catch (Exception e) {
+                Log.error("Report failed: " + e.getMessage(), e);
+                failed.incrementAndGet();
+            }
+        }
+        if (failed.get() > 0)
+            Log.error("Batch: " + failed.get() + " of " + batch.jobs().size() + " jobs failed.");
+        else
+            Log.info("✓ Generation complete.");
+        return failed.get();
+    }
+
+    private static void runJob(GeneratorConfig config, BatchCaches caches) throws Exception {
+        Log.info("Job " + config.modId() + ": " + config.inputDir() + " -> " + config.outputDir());
+        if (config.clean())
+            FileUtils.deleteDirectory(config.outputDir());
+
+        SchemaValidator validator = caches.validator(config.inputDir());
+        AssetConfigLoader loader =
+                new AssetConfigLoader(config.inputDir(), validator, config.threads());
+        RecolorSources recolor = caches.recolor(config.inputDir(), validator);
+        generate(config, BuildManifest.load(config.outputDir()), loader, recolor,
+                AssetRules.load(config.inputDir(), validator), ChangedInputs.UNKNOWN,
+                config.full());
+        Log.info("Job " + config.modId() + " files: " + files(Metrics::get));
+        Log.info("✓ Job " + config.modId() + " complete.");
+    }
+
+    private static void generate(GeneratorConfig config, BuildManifest manifest,
+            AssetConfigLoader loader, RecolorSources recolor, AssetRules rules,
+            ChangedInputs changes, boolean full) throws Exception {
+        TextureIndex textures = TextureIndex.scan(config.inputDir());
+        if (config.archive() != null) {
+            // The archive is rebuilt from scratch every run (and only rewritten if its bytes
+            // change), so the output-dir manifest doesn't apply.
+            try (PackArchive archive = new PackArchive(config.archive(), config.archiveStore(),
+                    config.packFormat(), config.modId() + " generated assets");
+                    AssetWriter writer = new AssetWriter(config, archive)) {
+                new FabricAssetGenerator(config, writer, BuildManifest.empty(), recolor,
+                        ChangedInputs.UNKNOWN, textures, rules).generate(loader);
+                writer.flush();
+            }
+            return;
+        }
+
+        manifest.useFingerprint(BuildManifest.runFingerprint(config));
+        if (full)
+            manifest.invalidate();
+
+        try (AssetWriter writer = new AssetWriter(config, null)) {
+            FabricAssetGenerator generator = new FabricAssetGenerator(config, writer, manifest,
+                    recolor, changes, textures, rules);
+            generator.generate(loader);
+            writer.flush();
+        }
+        if (!config.dryRun())
+            manifest.save(config.outputDir());
+    }
+
+    private static RecolorSources recolorSources(Path inputDir, SchemaValidator validator,
+            BaseTextureCache baseTextures) throws Exception {
+        return new RecolorSources(PaletteMap.loadAll(inputDir, validator),
+                ColorRamp.loadAll(inputDir, validator), baseTextures);
+    }
+
+    private static void finish(GeneratorConfig config) throws Exception {
+        Log.info("Files: " + files(Metrics::get));
+        if (config.report() != null)
+            Metrics.writeReport(config.report(), config);
+    }
+
+    private static String files(ToLongFunction<Metrics.Counter> counter) {
+        return counter.applyAsLong(Metrics.Counter.FILES_WRITTEN) + " written, "
+                + counter.applyAsLong(Metrics.Counter.FILES_LINKED) + " linked, "
+                + counter.applyAsLong(Metrics.Counter.FILES_UNCHANGED) + " unchanged, "
+                + counter.applyAsLong(Metrics.Counter.FILES_DELETED) + " deleted";
+    }
+
+    /**
+     * What batch jobs share: validators by schema dir (schemas compile once however many jobs
+     * use them), palettes and ramps by input dir, and one base texture cache.
+     */
+    private static final class BatchCaches {
+        private final boolean strict;
+        private final Map<Path, SchemaValidator> validators = new ConcurrentHashMap<>();
+        private final Map<Path, RecolorSources> recolor = new HashMap<>();
+        private final BaseTextureCache baseTextures = new BaseTextureCache();
+
+        BatchCaches(boolean strict) {
+            this.strict = strict;
+        }
+
+        SchemaValidator validator(Path inputDir) {
+            Path schemaDir = inputDir.resolve("schemas").toAbsolutePath().normalize();
+            return validators.computeIfAbsent(schemaDir, dir -> new SchemaValidator(dir, strict));
+        }
+
+        synchronized RecolorSources recolor(Path inputDir, SchemaValidator validator)
+                throws Exception {
+            Path key = inputDir.toAbsolutePath().normalize();
+            RecolorSources sources = recolor.get(key);
+            if (sources == null) {
+                sources = recolorSources(inputDir, validator, baseTextures);
+                recolor.put(key, sources);
+            }
+            return sources;
         }
     }
 }
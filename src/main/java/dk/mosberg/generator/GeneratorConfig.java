@@ -13,7 +13,11 @@ import java.util.List;
  * required).
  */
 public record GeneratorConfig(String modId, Path inputDir, Path outputDir, String lang,
-        boolean strict, boolean dryRun, boolean clean, boolean help) {
+        boolean strict, boolean dryRun, boolean verify, boolean clean, boolean full, int threads,
+        boolean watch, Path archive, boolean archiveStore, int packFormat, int pngLevel,
+        PngEncoder.Filter pngFilter, AssetWriter.TextureMode textureMode, boolean minify,
+        int ioThreads, boolean ioGroupByDir, Path report, Path batch, Path changed,
+        boolean help) {
     public static GeneratorConfig fromArgs(String[] args) {
         String modid = "";
         Path input = Paths.get("src/main/resources");
@@ -21,7 +25,23 @@ public record GeneratorConfig(String modId, Path inputDir, Path outputDir, Strin
         String lang = "en_us";
         boolean strict = true;
         boolean dryRun = false;
+        boolean verify = false;
         boolean clean = false;
+        boolean full = false;
+        int threads = 1;
+        boolean watch = false;
+        Path archive = null;
+        boolean archiveStore = false;
+        int packFormat = 34;
+        int pngLevel = 9;
+        PngEncoder.Filter pngFilter = PngEncoder.Filter.ADAPTIVE;
+        AssetWriter.TextureMode textureMode = AssetWriter.TextureMode.COPY;
+        boolean minify = false;
+        int ioThreads = 2;
+        boolean ioGroupByDir = false;
+        Path report = null;
+        Path batch = null;
+        Path changed = null;
         boolean help = false;
 
         List<String> positional = new ArrayList<>();
@@ -52,7 +72,25 @@ public record GeneratorConfig(String modId, Path inputDir, Path outputDir, Strin
                 case "--strict" -> strict = true;
                 case "--no-strict" -> strict = false;
                 case "--dry-run" -> dryRun = true;
+                case "--verify" -> verify = true;
                 case "--clean" -> clean = true;
+                case "--full" -> full = true;
+                case "--threads" -> threads = requireThreads(key, requireValue(key, value));
+                case "--watch" -> watch = true;
+                case "--archive" -> archive = Paths.get(requireValue(key, value));
+                case "--store" -> archiveStore = true;
+                case "--pack-format" -> packFormat = requireInt(key, requireValue(key, value));
+                case "--png-level" -> pngLevel = requirePngLevel(key, requireValue(key, value));
+                case "--png-filter" -> pngFilter = requirePngFilter(key, requireValue(key, value));
+                case "--texture-mode" ->
+                    textureMode = requireTextureMode(key, requireValue(key, value));
+                case "--minify" -> minify = true;
+                case "--io-threads" ->
+                    ioThreads = requireNonNegative(key, requireValue(key, value));
+                case "--io-group-by-dir" -> ioGroupByDir = true;
+                case "--report" -> report = Paths.get(requireValue(key, value));
+                case "--batch" -> batch = Paths.get(requireValue(key, value));
+                case "--changed" -> changed = Paths.get(requireValue(key, value));
                 default -> throw new IllegalArgumentException("Unknown option: " + key);
             }
         }
@@ -65,7 +103,22 @@ public record GeneratorConfig(String modId, Path inputDir, Path outputDir, Strin
         if (positional.size() > 2)
             throw new IllegalArgumentException("Too many positional args.");
 
-        return new GeneratorConfig(modid, input, output, lang, strict, dryRun, clean, help);
+        return new GeneratorConfig(modid, input, output, lang, strict, dryRun, verify, clean,
+                full, threads, watch, archive, archiveStore, packFormat, pngLevel, pngFilter,
+                textureMode, minify, ioThreads, ioGroupByDir, report, batch, changed, help);
+    }
+
+    /**
+     * This config with one batch job's mod id, dirs and lang; every other option is shared.
+     */
+    public GeneratorConfig withJob(String modId, Path inputDir, Path outputDir, String lang) {
+        return new GeneratorConfig(modId, inputDir, outputDir, lang, strict, dryRun, verify, clean,
+                full, threads, watch, archive, archiveStore, packFormat, pngLevel, pngFilter,
+                textureMode, minify, ioThreads, ioGroupByDir, report, null, null, help);
+    }
+
+    public PngEncoder pngEncoder() {
+        return new PngEncoder(pngLevel, pngFilter);
     }
 
     private static String requireValue(String key, String value) {
@@ -74,6 +127,52 @@ public record GeneratorConfig(String modId, Path inputDir, Path outputDir, Strin
         return value;
     }
 
+    private static int requireInt(String key, String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(key + " requires a number: " + value);
+        }
+    }
+
+    private static int requireNonNegative(String key, String value) {
+        int n = requireInt(key, value);
+        if (n < 0)
+            throw new IllegalArgumentException(key + " must be >= 0.");
+        return n;
+    }
+
+    private static int requireThreads(String key, String value) {
+        int n = requireNonNegative(key, value);
+        // 0 means "one per available core".
+        return n == 0 ? Runtime.getRuntime().availableProcessors() : n;
+    }
+
+    private static int requirePngLevel(String key, String value) {
+        int n = requireInt(key, value);
+        if (n < 0 || n > 9)
+            throw new IllegalArgumentException(key + " must be 0-9.");
+        return n;
+    }
+
+    private static PngEncoder.Filter requirePngFilter(String key, String value) {
+        return switch (value) {
+            case "none" -> PngEncoder.Filter.NONE;
+            case "adaptive" -> PngEncoder.Filter.ADAPTIVE;
+            default -> throw new IllegalArgumentException(key + " must be none or adaptive: "
+                    + value);
+        };
+    }
+
+    private static AssetWriter.TextureMode requireTextureMode(String key, String value) {
+        return switch (value) {
+            case "copy" -> AssetWriter.TextureMode.COPY;
+            case "hardlink" -> AssetWriter.TextureMode.HARDLINK;
+            default -> throw new IllegalArgumentException(key + " must be copy or hardlink: "
+                    + value);
+        };
+    }
+
     public static void printUsage(PrintStream out) {
         out.println("Usage:");
         out.println("  java -jar minecraft_generator.jar --modid <modid> [options]");
@@ -88,13 +187,47 @@ public record GeneratorConfig(String modId, Path inputDir, Path outputDir, Strin
         out.println("  --strict           Fail on schema validation errors (default).");
         out.println("  --no-strict        Log validation errors but continue.");
         out.println("  --dry-run          Don't write files; only log writes.");
+        out.println("  --verify           Don't write files; check the output dir against what"
+                + " would be generated and exit with 3 if it differs.");
         out.println("  --clean            Delete output dir before generating.");
+        out.println("  --full             Regenerate every material, even if unchanged.");
+        out.println("  --threads <n>      Threads per pipeline stage (default: 1; 0 = all cores).");
+        out.println("  --watch            Keep running and regenerate when inputs change.");
+        out.println("  --archive <zip>    Write a single pack zip instead of the output dir.");
+        out.println("  --store            Store archive entries uncompressed (default: deflate).");
+        out.println("  --pack-format <n>  pack_format in the archive's pack.mcmeta (default: 34).");
+        out.println("  --png-level <0-9>  Deflate level for generated PNGs (default: 9).");
+        out.println("  --png-filter <f>   PNG row filters: none | adaptive (default: adaptive).");
+        out.println("  --texture-mode <m> Plain textures: copy | hardlink (default: copy).");
+        out.println("  --minify           Write JSON without indentation.");
+        out.println("  --io-threads <n>   File I/O threads (default: 2; 0 = write on the generating"
+                + " thread).");
+        out.println("  --io-group-by-dir  Give each output directory to a single I/O thread.");
+        out.println("  --report <file>    Write a JSON run report (timings, counters, histograms).");
+        out.println("  --batch <file>     Run the jobs in a batch file in one process (replaces"
+                + " --modid/--input/--output).");
+        out.println("  --changed <file>   Input-relative paths that changed since the last run, one"
+                + " per line (from build tools).");
         out.println("  --help             Print this help.");
         out.println();
         out.println("Input conventions (inside input dir):");
         out.println("  schemas/*.schema.json");
-        out.println("  materials/*.json");
+        out.println("  materials/*.json  (one material each, or a top-level array of materials)");
+        out.println("  materials/*.jsonl, *.ndjson  (bundles: one material per line)");
+        out.println("  palettes/*.json  (palette maps; recolor textures of materials whose"
+                + " 'palette' matches)");
+        out.println("  ramps/*.ramp.json  (color ramps; materials with properties.base_texture and"
+                + " properties.base_ramp are recolored to the ramp named by 'palette')");
+        out.println("  asset-rules.json  (optional; output templates per category: cube_all, pillar,"
+                + " slab, stairs, pane, generated_item)");
         out.println(
                 "  textures/material/<category>/<id>.png  (optional; copied to assets/<modid>/textures/...)");
+        out.println();
+        out.println("Batch file (--batch):");
+        out.println("  {\"jobs\": [{\"modid\": ..., \"input\": ..., \"output\": ...,"
+                + " \"lang\": ...}]}");
+        out.println("  Paths are relative to the batch file; lang is optional. Jobs share schemas,"
+                + " ramps and decoded base textures. Jobs run in parallel unless one's output"
+                + " overlaps the other's input or output.");
     }
 }
@@ -0,0 +1,103 @@
+package dk.mosberg.generator;
+
+/**
+ * Open-addressing {@code int -> int} hash map with linear probing. No boxing and no allocation on
+ * lookup, which matters when it sits in a per-pixel loop. Key 0 is tracked outside the table so the
+ * table can use 0 as its "empty" marker.
+ */
+public final class IntIntMap {
+
+    private static final int EMPTY = 0;
+
+    private int[] keys;
+    private int[] values;
+    private int mask;
+    private int size;
+    private boolean hasZeroKey;
+    private int zeroValue;
+
+    public IntIntMap() {
+        this(16);
+    }
+
+    public IntIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize * 2 - 1)) << 1;
+        keys = new int[capacity];
+        values = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    public int size() {
+        return size + (hasZeroKey ? 1 : 0);
+    }
+
+    public void put(int key, int value) {
+        if (key == EMPTY) {
+            hasZeroKey = true;
+            zeroValue = value;
+            return;
+        }
+
+        int i = slot(key);
+        while (keys[i] != EMPTY) {
+            if (keys[i] == key) {
+                values[i] = value;
+                return;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length)
+            grow();
+    }
+
+    /**
+     * Returns the value for {@code key}, or {@code missing} if there is none.
+     */
+    public int get(int key, int missing) {
+        if (key == EMPTY)
+            return hasZeroKey ? zeroValue : missing;
+
+        int i = slot(key);
+        int k;
+        while ((k = keys[i]) != EMPTY) {
+            if (k == key)
+                return values[i];
+            i = (i + 1) & mask;
+        }
+        return missing;
+    }
+
+    public boolean containsKey(int key) {
+        if (key == EMPTY)
+            return hasZeroKey;
+
+        int i = slot(key);
+        int k;
+        while ((k = keys[i]) != EMPTY) {
+            if (k == key)
+                return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    private int slot(int key) {
+        // Fibonacci hashing spreads the mostly-low-bit differences between nearby colors.
+        return (key * 0x9E3779B9) >>> (32 - Integer.numberOfTrailingZeros(keys.length)) & mask;
+    }
+
+    private void grow() {
+        int[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new int[oldKeys.length * 2];
+        values = new int[oldValues.length * 2];
+        mask = keys.length - 1;
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY)
+                put(oldKeys[i], oldValues[i]);
+        }
+    }
+}
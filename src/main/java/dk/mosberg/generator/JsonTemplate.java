@@ -0,0 +1,140 @@
+package dk.mosberg.generator;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A JSON document pre-rendered to bytes, with holes where one string value goes. Built once from
+ * a sample tree whose varying string contains {@link #SLOT}; {@link #render} then only copies the
+ * fixed parts and escapes the value, so the output is byte-for-byte what {@code gson.toJson} (plus
+ * the trailing newline) would give for the real tree, without building or printing it.
+ */
+public final class JsonTemplate {
+
+    /** Stands in for the value inside sample strings; ids can't contain NUL. */
+    public static final String SLOT = "\u0000slot\u0000";
+
+    private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+    private final byte[][] parts;
+
+    private JsonTemplate(byte[][] parts) {
+        this.parts = parts;
+    }
+
+    public static JsonTemplate compile(JsonElement sample, Gson gson) {
+        String text = gson.toJson(sample) + "\n";
+        String quoted = gson.toJson(SLOT);
+        String marker = quoted.substring(1, quoted.length() - 1);
+
+        List<byte[]> parts = new ArrayList<>();
+        int from = 0;
+        int at;
+        while ((at = text.indexOf(marker, from)) >= 0) {
+            parts.add(text.substring(from, at).getBytes(StandardCharsets.UTF_8));
+            from = at + marker.length();
+        }
+        parts.add(text.substring(from).getBytes(StandardCharsets.UTF_8));
+        if (parts.size() == 1)
+            throw new IllegalArgumentException("Template sample has no slot: " + text);
+        return new JsonTemplate(parts.toArray(new byte[0][]));
+    }
+
+    /**
+     * Renders the document with every slot replaced by {@code value}, into a per-thread buffer
+     * that is copied out once at its final size.
+     */
+    public byte[] render(String value) {
+        Buffer out = BUFFER.get();
+        out.length = 0;
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0)
+                escape(value, out);
+            out.write(parts[i]);
+        }
+        return Arrays.copyOf(out.bytes, out.length);
+    }
+
+    /**
+     * Gson's HTML-safe string escaping (its default): control characters, quote, backslash,
+     * {@code < > & = '} and U+2028/U+2029 are escaped; everything else is written as UTF-8.
+     */
+    private static void escape(String value, Buffer out) {
+        int n = value.length();
+        int i = 0;
+        while (i < n) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                if (isLineSeparator(c)) {
+                    out.writeAscii(unicodeEscape(c));
+                    i++;
+                    continue;
+                }
+                int end = i + 1;
+                while (end < n && value.charAt(end) >= 0x80 && !isLineSeparator(value.charAt(end)))
+                    end++;
+                out.write(value.substring(i, end).getBytes(StandardCharsets.UTF_8));
+                i = end;
+                continue;
+            }
+
+            switch (c) {
+                case '"' -> out.writeAscii("\\\"");
+                case '\\' -> out.writeAscii("\\\\");
+                case '\t' -> out.writeAscii("\\t");
+                case '\b' -> out.writeAscii("\\b");
+                case '\n' -> out.writeAscii("\\n");
+                case '\r' -> out.writeAscii("\\r");
+                case '\f' -> out.writeAscii("\\f");
+                case '<', '>', '&', '=', '\'' -> out.writeAscii(unicodeEscape(c));
+                default -> {
+                    if (c < 0x20)
+                        out.writeAscii(unicodeEscape(c));
+                    else
+                        out.write((byte) c);
+                }
+            }
+            i++;
+        }
+    }
+
+    private static boolean isLineSeparator(char c) {
+        return c == 0x2028 || c == 0x2029;
+    }
+
+    private static String unicodeEscape(char c) {
+        return String.format("\\u%04x", (int) c);
+    }
+
+    private static final class Buffer {
+        byte[] bytes = new byte[256];
+        int length;
+
+        void write(byte b) {
+            ensure(1);
+            bytes[length++] = b;
+        }
+
+        void write(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, bytes, length, b.length);
+            length += b.length;
+        }
+
+        void writeAscii(String s) {
+            ensure(s.length());
+            for (int i = 0; i < s.length(); i++)
+                bytes[length++] = (byte) s.charAt(i);
+        }
+
+        private void ensure(int extra) {
+            if (length + extra > bytes.length)
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, length + extra));
+        }
+    }
+}
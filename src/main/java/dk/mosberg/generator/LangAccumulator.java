@@ -0,0 +1,74 @@
+package dk.mosberg.generator;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Collects lang entries in memory for the whole run so each lang file is read once and written
+ * once. Keys already present in the existing file keep their position; new keys are appended in
+ * the order they were added, which matches the old per-material read-merge-write result.
+ */
+public final class LangAccumulator {
+
+    private final Path outputRoot;
+    private final Map<Path, Map<String, String>> files = new LinkedHashMap<>();
+
+    /**
+     * @param outputRoot where existing lang files are read from, or null to start empty
+     */
+    public LangAccumulator(Path outputRoot) {
+        this.outputRoot = outputRoot;
+    }
+
+    public synchronized void add(String modid, String langCode, Map<String, String> additions) {
+        Path rel = AssetsPaths.lang(modid, langCode);
+        files.computeIfAbsent(rel, this::loadExisting).putAll(additions);
+    }
+
+    /**
+     * Removes keys that a material no longer produces (or that belonged to a deleted material).
+     */
+    public synchronized void remove(String modid, String langCode, Collection<String> keys) {
+        Path rel = AssetsPaths.lang(modid, langCode);
+        files.computeIfAbsent(rel, this::loadExisting).keySet().removeAll(keys);
+    }
+
+    /**
+     * Returns the merged entries per relative lang path, as JSON objects ready to be written.
+     */
+    public synchronized Map<Path, JsonObject> toJson() {
+        Map<Path, JsonObject> out = new LinkedHashMap<>();
+        for (Map.Entry<Path, Map<String, String>> file : files.entrySet()) {
+            JsonObject json = new JsonObject();
+            for (Map.Entry<String, String> e : file.getValue().entrySet())
+                json.addProperty(e.getKey(), e.getValue());
+            out.put(file.getKey(), json);
+        }
+        return out;
+    }
+
+    private Map<String, String> loadExisting(Path rel) {
+        Map<String, String> entries = new LinkedHashMap<>();
+        if (outputRoot == null)
+            return entries;
+        Path abs = outputRoot.resolve(rel);
+        if (!FileUtils.exists(abs))
+            return entries;
+
+        try {
+            JsonObject existing = JsonParser.parseString(FileUtils.readString(abs)).getAsJsonObject();
+            for (Map.Entry<String, JsonElement> e : existing.entrySet())
+                entries.put(e.getKey(), e.getValue().getAsString());
+        } catch (Exception e) {
+            Log.warn("Existing lang file invalid; overwriting: " + abs);
+            entries.clear();
+        }
+        return entries;
+    }
+}
@@ -9,6 +9,25 @@ public final class Log {
 
     private Log() {}
 
+    public static boolean isDebugEnabled() {
+        return logger.isDebugEnabled();
+    }
+
+    public static void debug(String msg) {
+        logger.debug(msg);
+    }
+
+    /**
+     * Parameterized so per-file messages cost no string building while debug is off.
+     */
+    public static void debug(String format, Object arg) {
+        logger.debug(format, arg);
+    }
+
+    public static void debug(String format, Object arg1, Object arg2) {
+        logger.debug(format, arg1, arg2);
+    }
+
     public static void info(String msg) {
         logger.info(msg);
     }
@@ -0,0 +1,286 @@
+package dk.mosberg.generator;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Timings and counters for a generator run. Every {@link #span} is recorded twice: into per-phase
+ * totals and log2 latency histograms (for {@code --report}), and as a JFR
+ * {@code dk.mosberg.generator.Phase} event, which costs next to nothing unless a recording with
+ * that event enabled is running. Phases nest (a material span contains its recolor and write
+ * spans) and totals are summed over all threads, so they can exceed the wall time.
+ * <p>
+ * A single run records into one process-wide instance. Batch jobs run side by side, so each
+ * {@link #startJob} gets an instance of its own, which the threads the job starts inherit.
+ */
+public final class Metrics {
+
+    public enum Phase {
+        SCHEMA_LOAD, PARSE, VALIDATE, MATERIAL, TEXTURE_DECODE, RECOLOR, PNG_ENCODE, WRITE, VERIFY
+    }
+
+    public enum Counter {
+        MATERIALS_GENERATED, MATERIALS_UP_TO_DATE, FILES_WRITTEN, FILES_LINKED, FILES_UNCHANGED,
+        FILES_DELETED, BYTES_WRITTEN, TEXTURES_UNUSED
+    }
+
+    // Bucket i holds durations in [2^(i-1), 2^i) microseconds; bucket 0 is everything below 1 us.
+    private static final int BUCKETS = 40;
+
+    private static final Metrics PROCESS = new Metrics();
+    private static final InheritableThreadLocal<Metrics> CURRENT = new InheritableThreadLocal<>() {
+        @Override
+        protected Metrics initialValue() {
+            return PROCESS;
+        }
+    };
+
+    private final PhaseStats[] phases = new PhaseStats[Phase.values().length];
+    private final LongAdder[] counters = new LongAdder[Counter.values().length];
+    private final Queue<Skipped> skipped = new ConcurrentLinkedQueue<>();
+    private volatile long runStart = System.nanoTime();
+
+    private Metrics() {
+        for (int i = 0; i < phases.length; i++)
+            phases[i] = new PhaseStats();
+        for (int i = 0; i < counters.length; i++)
+            counters[i] = new LongAdder();
+    }
+
+    private static Metrics current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Makes the calling thread, and the threads it starts from now on, record into fresh metrics
+     * until {@link #endJob}. Returns them for {@link #report(GeneratorConfig)} and {@link #get}.
+     */
+    public static Metrics startJob() {
+        Metrics job = new Metrics();
+        CURRENT.set(job);
+        return job;
+    }
+
+    /** Goes back to recording into the process-wide metrics. */
+    public static void endJob() {
+        CURRENT.remove();
+    }
+
+    /**
+     * Starts timing {@code phase}; close the span to record it. {@code detail} (a material id, a
+     * path, ...) is only turned into a string when a JFR recording actually keeps the event.
+     */
+    public static Span span(Phase phase, Object detail) {
+        return new Span(current(), phase, detail);
+    }
+
+    public static void count(Counter counter) {
+        current().counters[counter.ordinal()].increment();
+    }
+
+    public static void add(Counter counter, long amount) {
+        current().counters[counter.ordinal()].add(amount);
+    }
+
+    /**
+     * Records a material file or bundle record that non-strict mode skipped, for the report's
+     * {@code skipped} list.
+     */
+    public static void skipped(String source, String message, List<ValidationError> errors) {
+        current().skipped.add(new Skipped(source, message, List.copyOf(errors)));
+    }
+
+    public static long get(Counter counter) {
+        return current().counter(counter);
+    }
+
+    public long counter(Counter counter) {
+        return counters[counter.ordinal()].sum();
+    }
+
+    /**
+     * Clears everything and restarts the wall clock; called at the start of each run.
+     */
+    public static void reset() {
+        Metrics m = current();
+        for (PhaseStats stats : m.phases)
+            stats.reset();
+        for (LongAdder counter : m.counters)
+            counter.reset();
+        m.skipped.clear();
+        m.runStart = System.nanoTime();
+    }
+
+    /** The report of the current run; see {@link #toJson}. */
+    public static JsonObject report(GeneratorConfig config) {
+        return current().toJson(config);
+    }
+
+    /**
+     * The run summary as JSON: wall time, counters, the skipped materials with their errors, and
+     * per phase the count, total, mean and max plus a histogram keyed by exclusive bucket upper
+     * bound in microseconds (empty buckets left out).
+     */
+    public JsonObject toJson(GeneratorConfig config) {
+        JsonObject root = new JsonObject();
+        root.addProperty("modid", config.modId());
+        root.addProperty("threads", config.threads());
+        root.addProperty("wall_ms", millis(System.nanoTime() - runStart));
+
+        JsonObject counters = new JsonObject();
+        for (Counter c : Counter.values())
+            counters.addProperty(key(c), counter(c));
+        root.add("counters", counters);
+
+        JsonArray skipped = new JsonArray();
+        for (Skipped s : this.skipped) {
+            JsonObject entry = new JsonObject();
+            entry.addProperty("source", s.source());
+            entry.addProperty("message", s.message());
+            JsonArray errors = new JsonArray();
+            for (ValidationError err : s.errors())
+                errors.add(err.toString());
+            entry.add("errors", errors);
+            skipped.add(entry);
+        }
+        root.add("skipped", skipped);
+
+        JsonObject phases = new JsonObject();
+        for (Phase p : Phase.values()) {
+            PhaseStats stats = this.phases[p.ordinal()];
+            long count = stats.count.sum();
+            if (count == 0)
+                continue;
+            long total = stats.totalNanos.sum();
+
+            JsonObject phase = new JsonObject();
+            phase.addProperty("count", count);
+            phase.addProperty("total_ms", millis(total));
+            phase.addProperty("mean_us", total / count / 1000);
+            phase.addProperty("max_us", stats.maxNanos.get() / 1000);
+            JsonObject histogram = new JsonObject();
+            for (int i = 0; i < BUCKETS; i++) {
+                long n = stats.buckets.get(i);
+                if (n > 0)
+                    histogram.addProperty(Long.toString(1L << i), n);
+            }
+            phase.add("histogram_us", histogram);
+            phases.add(key(p), phase);
+        }
+        root.add("phases", phases);
+        return root;
+    }
+
+    /**
+     * The report of a batch: the batch file, its wall time and each job's {@link #toJson}, in
+     * batch-file order.
+     */
+    public static JsonObject batchReport(Path batchFile, long startNanos, List<JsonObject> jobs) {
+        JsonObject root = new JsonObject();
+        root.addProperty("batch", batchFile.toString());
+        root.addProperty("wall_ms", millis(System.nanoTime() - startNanos));
+        JsonArray array = new JsonArray();
+        jobs.forEach(array::add);
+        root.add("jobs", array);
+        return root;
+    }
+
+    public static void writeReport(Path file, GeneratorConfig config) throws Exception {
+        writeReport(file, report(config));
+    }
+
+    public static void writeReport(Path file, JsonObject report) throws Exception {
+        String json = FileUtils.PRETTY_GSON.toJson(report) + "\n";
+        FileUtils.writeBytesIfChanged(file, json.getBytes(StandardCharsets.UTF_8));
+        Log.info("Report: " + file.toAbsolutePath());
+    }
+
+    private record Skipped(String source, String message, List<ValidationError> errors) {
+    }
+
+    private static String key(Enum<?> e) {
+        return e.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static double millis(long nanos) {
+        return Math.round(nanos / 10_000.0) / 100.0;
+    }
+
+    private static final class PhaseStats {
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+            long micros = nanos / 1000;
+            int bucket = 64 - Long.numberOfLeadingZeros(micros);
+            buckets.incrementAndGet(Math.min(bucket, BUCKETS - 1));
+        }
+
+        void reset() {
+            count.reset();
+            totalNanos.reset();
+            maxNanos.set(0);
+            for (int i = 0; i < BUCKETS; i++)
+                buckets.set(i, 0);
+        }
+    }
+
+    public static final class Span implements AutoCloseable {
+        private final Metrics metrics;
+        private final Phase phase;
+        private final Object detail;
+        private final PhaseEvent event = new PhaseEvent();
+        private final long start;
+
+        private Span(Metrics metrics, Phase phase, Object detail) {
+            this.metrics = metrics;
+            this.phase = phase;
+            this.detail = detail;
+            event.begin();
+            start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            metrics.phases[phase.ordinal()].record(System.nanoTime() - start);
+            event.end();
+            if (event.shouldCommit()) {
+                event.phase = key(phase);
+                event.detail = detail == null ? null : detail.toString();
+                event.commit();
+            }
+        }
+    }
+
+    @Name("dk.mosberg.generator.Phase")
+    @Label("Generator Phase")
+    @Category("Minecraft Generator")
+    @Description("One timed step of a generator run")
+    static final class PhaseEvent extends jdk.jfr.Event {
+        @Label("Phase")
+        String phase;
+
+        @Label("Detail")
+        String detail;
+    }
+}
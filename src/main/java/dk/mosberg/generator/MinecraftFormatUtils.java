@@ -1,5 +1,6 @@
 package dk.mosberg.generator;
 
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 
 public final class MinecraftFormatUtils {
@@ -46,4 +47,171 @@ public final class MinecraftFormatUtils {
         root.add("variants", variant);
         return root;
     }
+
+    public static JsonObject cubeColumnBlockModel(String modid, String textureName) {
+        // block/cube_column; without a separate top texture the ends use the side texture
+        JsonObject textures = new JsonObject();
+        textures.addProperty("end", modid + ":block/" + textureName);
+        textures.addProperty("side", modid + ":block/" + textureName);
+
+        JsonObject model = new JsonObject();
+        model.addProperty("parent", "minecraft:block/cube_column");
+        model.add("textures", textures);
+        return model;
+    }
+
+    /**
+     * A model for the vanilla slab, slab_top, stairs, inner_stairs and outer_stairs parents, with
+     * one texture on every face.
+     */
+    public static JsonObject sidedBlockModel(String parent, String modid, String textureName) {
+        String texture = modid + ":block/" + textureName;
+        JsonObject textures = new JsonObject();
+        textures.addProperty("bottom", texture);
+        textures.addProperty("side", texture);
+        textures.addProperty("top", texture);
+
+        JsonObject model = new JsonObject();
+        model.addProperty("parent", "minecraft:block/" + parent);
+        model.add("textures", textures);
+        return model;
+    }
+
+    /**
+     * A model for the vanilla template_glass_pane_* parents; the post and side parts also show the
+     * texture on the edge.
+     */
+    public static JsonObject paneBlockModel(String parent, String modid, String textureName,
+            boolean edge) {
+        JsonObject textures = new JsonObject();
+        if (edge)
+            textures.addProperty("edge", modid + ":block/" + textureName);
+        textures.addProperty("pane", modid + ":block/" + textureName);
+
+        JsonObject model = new JsonObject();
+        model.addProperty("parent", "minecraft:block/" + parent);
+        model.add("textures", textures);
+        return model;
+    }
+
+    public static JsonObject blockTextureItemModel(String modid, String textureName) {
+        // flat item showing the block texture (like vanilla panes)
+        JsonObject textures = new JsonObject();
+        textures.addProperty("layer0", modid + ":block/" + textureName);
+
+        JsonObject model = new JsonObject();
+        model.addProperty("parent", "minecraft:item/generated");
+        model.add("textures", textures);
+        return model;
+    }
+
+    public static JsonObject axisBlockstate(String modid, String modelName) {
+        // pillar: the y-axis model turned on its side for x and z
+        JsonObject variants = new JsonObject();
+        variants.add("axis=x", variant(modid, modelName, 90, 90));
+        variants.add("axis=y", variant(modid, modelName, 0, 0));
+        variants.add("axis=z", variant(modid, modelName, 90, 0));
+
+        JsonObject root = new JsonObject();
+        root.add("variants", variants);
+        return root;
+    }
+
+    public static JsonObject slabBlockstate(String modid, String bottomModel, String topModel,
+            String doubleModel) {
+        JsonObject variants = new JsonObject();
+        variants.add("type=bottom", variant(modid, bottomModel, 0, 0));
+        variants.add("type=double", variant(modid, doubleModel, 0, 0));
+        variants.add("type=top", variant(modid, topModel, 0, 0));
+
+        JsonObject root = new JsonObject();
+        root.add("variants", variants);
+        return root;
+    }
+
+    /**
+     * The 40 vanilla stairs variants (facing x half x shape). Each facing turns the east-facing
+     * models; left corners turn a further quarter back on the bottom half, right corners a
+     * quarter on the (upside-down) top half.
+     */
+    public static JsonObject stairsBlockstate(String modid, String straightModel,
+            String innerModel, String outerModel) {
+        String[] facings = {"east", "north", "south", "west"};
+        int[] facingY = {0, 270, 90, 180};
+        String[] shapes = {"inner_left", "inner_right", "outer_left", "outer_right", "straight"};
+
+        JsonObject variants = new JsonObject();
+        for (int f = 0; f < facings.length; f++) {
+            for (String half : new String[] {"bottom", "top"}) {
+                boolean top = half.equals("top");
+                for (String shape : shapes) {
+                    String model = shape.startsWith("inner") ? innerModel
+                            : shape.startsWith("outer") ? outerModel : straightModel;
+                    int y = facingY[f];
+                    if (!top && shape.endsWith("_left"))
+                        y -= 90;
+                    else if (top && shape.endsWith("_right"))
+                        y += 90;
+                    // Turned stairs lock their texture UVs so the faces line up, as vanilla does.
+                    int x = top ? 180 : 0;
+                    y = Math.floorMod(y, 360);
+                    variants.add("facing=" + facings[f] + ",half=" + half + ",shape=" + shape,
+                            variant(modid, model, x, y, x != 0 || y != 0));
+                }
+            }
+        }
+
+        JsonObject root = new JsonObject();
+        root.add("variants", variants);
+        return root;
+    }
+
+    /**
+     * The vanilla glass pane multipart: a post, plus a side or a no-side part per direction.
+     */
+    public static JsonObject paneBlockstate(String modid, String post, String side,
+            String sideAlt, String noSide, String noSideAlt) {
+        JsonArray parts = new JsonArray();
+        parts.add(part(null, null, variant(modid, post, 0, 0)));
+        parts.add(part("north", "true", variant(modid, side, 0, 0)));
+        parts.add(part("east", "true", variant(modid, side, 0, 90)));
+        parts.add(part("south", "true", variant(modid, sideAlt, 0, 0)));
+        parts.add(part("west", "true", variant(modid, sideAlt, 0, 90)));
+        parts.add(part("north", "false", variant(modid, noSide, 0, 0)));
+        parts.add(part("east", "false", variant(modid, noSideAlt, 0, 0)));
+        parts.add(part("south", "false", variant(modid, noSideAlt, 0, 90)));
+        parts.add(part("west", "false", variant(modid, noSide, 0, 270)));
+
+        JsonObject root = new JsonObject();
+        root.add("multipart", parts);
+        return root;
+    }
+
+    private static JsonObject variant(String modid, String modelName, int x, int y) {
+        return variant(modid, modelName, x, y, false);
+    }
+
+    private static JsonObject variant(String modid, String modelName, int x, int y,
+            boolean uvlock) {
+        JsonObject variant = new JsonObject();
+        variant.addProperty("model", modid + ":block/" + modelName);
+        if (x != 0)
+            variant.addProperty("x", x);
+        if (y != 0)
+            variant.addProperty("y", y);
+        if (uvlock)
+            variant.addProperty("uvlock", true);
+        return variant;
+    }
+
+    private static JsonObject part(String direction, String value, JsonObject apply) {
+        JsonObject part = new JsonObject();
+        if (direction != null) {
+            JsonObject when = new JsonObject();
+            when.addProperty(direction, value);
+            part.add("when", when);
+        }
+        part.add("apply", apply);
+        return part;
+    }
 }
@@ -0,0 +1,197 @@
+package dk.mosberg.generator;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Checks an output dir against what a run would write, without writing anything
+ * ({@code --verify}). The existing tree is hashed on a pool of threads while the generator runs;
+ * every file the generator produces is hashed in memory instead of written. Large files on disk
+ * are hashed through memory mappings; small ones (nearly all of a pack) are cheaper to read into a
+ * per-thread buffer than to map.
+ * <p>
+ * Differences are reported as:
+ * <ul>
+ * <li>added: would be written, isn't on disk and the manifest doesn't list it (a new output)
+ * <li>changed: on disk with different content
+ * <li>missing: would be written and the manifest lists it, but it is gone from disk
+ * <li>stale: on disk but not produced by the run (the output dir belongs to the generator)
+ * </ul>
+ */
+public final class OutputVerifier implements AutoCloseable {
+
+    /** Output-relative paths of each kind of difference, sorted. */
+    public record Report(int checked, List<String> added, List<String> changed,
+            List<String> missing, List<String> stale) {
+
+        public boolean clean() {
+            return added.isEmpty() && changed.isEmpty() && missing.isEmpty() && stale.isEmpty();
+        }
+    }
+
+    private record Digest(long size, String sha256) {
+    }
+
+    private static final int BATCH = 256;
+    private static final int MAP_THRESHOLD = 64 * 1024;
+    // Mappings are limited to 2 GB; no generated file comes close, but don't fail if one does.
+    private static final long MAP_CHUNK = 1L << 30;
+    private static final ThreadLocal<ByteBuffer> BUFFER =
+            ThreadLocal.withInitial(() -> ByteBuffer.allocate(MAP_THRESHOLD));
+
+    private final Path outputRoot;
+    private final BuildManifest manifest;
+    private final Set<String> known = new HashSet<>();
+    private final Map<String, Digest> expected = new ConcurrentHashMap<>();
+    private final Map<String, Digest> actual = new ConcurrentHashMap<>();
+    private final ExecutorService pool;
+    private final List<Future<?>> hashes = new ArrayList<>();
+
+    /**
+     * Snapshots the manifest's outputs and starts hashing every file below {@code outputRoot}
+     * (except the manifest) on {@code threads} threads.
+     */
+    public OutputVerifier(Path outputRoot, BuildManifest manifest, int threads)
+            throws IOException {
+        this.outputRoot = outputRoot;
+        this.manifest = manifest;
+        for (Path p : manifest.outputs())
+            known.add(portable(p));
+        this.pool = Executors.newFixedThreadPool(threads);
+        if (Files.isDirectory(outputRoot))
+            walk();
+    }
+
+    private void walk() throws IOException {
+        Path manifestFile = outputRoot.resolve(BuildManifest.FILE_NAME);
+        List<Path> batch = new ArrayList<>();
+        Files.walkFileTree(outputRoot, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && !file.equals(manifestFile)) {
+                    batch.add(file);
+                    if (batch.size() == BATCH) {
+                        submit(List.copyOf(batch));
+                        batch.clear();
+                    }
+                }
+                return FileVisitResult.CONTINUE;
+            }
+        });
+        if (!batch.isEmpty())
+            submit(List.copyOf(batch));
+    }
+
+    /** Hashes a batch of files on the pool; one task per file costs more than most hashes. */
+    private void submit(List<Path> files) {
+        hashes.add(pool.submit(() -> {
+            try (var span = Metrics.span(Metrics.Phase.VERIFY, files.get(0).getParent())) {
+                for (Path file : files) {
+                    try {
+                        actual.put(portable(outputRoot.relativize(file)), digest(file));
+                    } catch (NoSuchFileException e) {
+                        // Deleted while we were walking; it's just not there.
+                    }
+                }
+            }
+            return null;
+        }));
+    }
+
+    /** Records a generated file. */
+    public void put(Path relativePath, byte[] bytes) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        expected.put(portable(relativePath),
+                new Digest(bytes.length, HexFormat.of().formatHex(md.digest(bytes))));
+    }
+
+    /**
+     * Records an input texture that would be copied verbatim, using the manifest's digest for it
+     * (which the generator has usually computed already).
+     */
+    public void putTexture(Path relativePath, TextureIndex.Texture texture) throws Exception {
+        expected.put(portable(relativePath),
+                new Digest(texture.size(), manifest.textureDigest(texture)));
+    }
+
+    /**
+     * Waits for the output tree to be hashed and compares it with what was recorded.
+     */
+    public Report compare() throws Exception {
+        for (Future<?> f : hashes) {
+            try {
+                f.get();
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof Exception cause ? cause : e;
+            }
+        }
+
+        List<String> added = new ArrayList<>();
+        List<String> changed = new ArrayList<>();
+        List<String> missing = new ArrayList<>();
+        List<String> stale = new ArrayList<>();
+        for (Map.Entry<String, Digest> e : expected.entrySet()) {
+            Digest onDisk = actual.get(e.getKey());
+            if (onDisk == null)
+                (known.contains(e.getKey()) ? missing : added).add(e.getKey());
+            else if (!onDisk.equals(e.getValue()))
+                changed.add(e.getKey());
+        }
+        for (String rel : actual.keySet()) {
+            if (!expected.containsKey(rel))
+                stale.add(rel);
+        }
+        for (List<String> list : List.of(added, changed, missing, stale))
+            list.sort(null);
+        return new Report(expected.size(), added, changed, missing, stale);
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    private static Digest digest(Path file) throws Exception {
+        MessageDigest md = MessageDigest.getInstance("SHA-256");
+        long size;
+        try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+            size = ch.size();
+            if (size < MAP_THRESHOLD) {
+                ByteBuffer buf = BUFFER.get().clear();
+                while (buf.hasRemaining() && ch.read(buf) >= 0) {
+                    // until EOF or a full buffer (the file grew since size())
+                }
+                md.update(buf.flip());
+            } else {
+                for (long pos = 0; pos < size; pos += MAP_CHUNK)
+                    md.update(ch.map(FileChannel.MapMode.READ_ONLY, pos, Math.min(MAP_CHUNK,
+                            size - pos)));
+            }
+        }
+        return new Digest(size, HexFormat.of().formatHex(md.digest()));
+    }
+
+    private static String portable(Path rel) {
+        return rel.toString().replace('\\', '/');
+    }
+}
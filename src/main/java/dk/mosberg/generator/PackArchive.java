@@ -0,0 +1,149 @@
+package dk.mosberg.generator;
+
+import com.google.gson.JsonObject;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Collects generated files and writes them as a single resource-pack/datapack zip. The archive is
+ * deterministic: entries are sorted by name, every entry gets the same timestamp, and the deflate
+ * level is fixed, so unchanged inputs produce a byte-identical file that is left untouched on disk.
+ * <p>
+ * Entries arrive in generation order but must be written sorted, so their bytes are appended to a
+ * spill file next to the archive as they arrive; only names and offsets stay in memory. {@link
+ * #write} then copies them into the zip in name order, one entry in memory at a time.
+ */
+public final class PackArchive implements AutoCloseable {
+
+    // Set as local date-time so the time zone doesn't leak in. 1980-01-01 00:00 itself is the
+    // "before 1980" marker and would make ZipEntry add a zone-dependent extended timestamp.
+    private static final LocalDateTime FIXED_TIME = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    private record Slice(long offset, int length) {
+    }
+
+    private final Path file;
+    private final boolean store;
+    private final int packFormat;
+    private final String description;
+
+    // Guarded by "this". The spill file is created on the first entry.
+    private final Map<String, Slice> entries = new TreeMap<>();
+    private Path spill;
+    private OutputStream spillOut;
+    private long spillSize;
+
+    public PackArchive(Path file, boolean store, int packFormat, String description) {
+        this.file = file;
+        this.store = store;
+        this.packFormat = packFormat;
+        this.description = description;
+    }
+
+    /** Adds or replaces an entry. Safe to call from several threads. */
+    public void put(Path relativePath, byte[] bytes) throws IOException {
+        put(relativePath.toString().replace('\\', '/'), bytes);
+    }
+
+    private synchronized void put(String name, byte[] bytes) throws IOException {
+        if (spillOut == null) {
+            FileUtils.ensureParent(file.toAbsolutePath());
+            spill = Files.createTempFile(file.toAbsolutePath().getParent(),
+                    file.getFileName() + ".", ".entries");
+            spillOut = new BufferedOutputStream(Files.newOutputStream(spill));
+        }
+        // A replaced entry's old bytes stay in the spill file unused.
+        spillOut.write(bytes);
+        entries.put(name, new Slice(spillSize, bytes.length));
+        spillSize += bytes.length;
+    }
+
+    public synchronized void write() throws Exception {
+        JsonObject pack = new JsonObject();
+        pack.addProperty("pack_format", packFormat);
+        pack.addProperty("description", description);
+        JsonObject mcmeta = new JsonObject();
+        mcmeta.add("pack", pack);
+        put("pack.mcmeta", (FileUtils.PRETTY_GSON.toJson(mcmeta) + "\n")
+                .getBytes(StandardCharsets.UTF_8));
+        spillOut.flush();
+
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel in = FileChannel.open(spill, StandardOpenOption.READ);
+                OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp));
+                ZipOutputStream zip = new ZipOutputStream(out)) {
+            zip.setLevel(Deflater.DEFAULT_COMPRESSION);
+            byte[] buffer = new byte[64 * 1024];
+            for (Map.Entry<String, Slice> e : entries.entrySet()) {
+                Slice slice = e.getValue();
+                if (buffer.length < slice.length())
+                    buffer = new byte[Math.max(buffer.length * 2, slice.length())];
+                read(in, slice, buffer);
+                zip.putNextEntry(entry(e.getKey(), buffer, slice.length()));
+                zip.write(buffer, 0, slice.length());
+                zip.closeEntry();
+            }
+        }
+
+        if (Files.exists(file) && Files.mismatch(file, tmp) == -1) {
+            Files.delete(tmp);
+            Log.info("unchanged " + file);
+            return;
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING);
+        Log.info("wrote     " + file + " (" + entries.size() + " entries)");
+    }
+
+    /** Deletes the spill file. */
+    @Override
+    public synchronized void close() throws IOException {
+        if (spillOut == null)
+            return;
+        spillOut.close();
+        Files.deleteIfExists(spill);
+        spillOut = null;
+    }
+
+    private void read(FileChannel in, Slice slice, byte[] buffer) throws IOException {
+        ByteBuffer dst = ByteBuffer.wrap(buffer, 0, slice.length());
+        long position = slice.offset();
+        while (dst.hasRemaining()) {
+            int n = in.read(dst, position);
+            if (n < 0)
+                throw new IOException("Archive spill file is truncated: " + spill);
+            position += n;
+        }
+    }
+
+    private ZipEntry entry(String name, byte[] bytes, int length) {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setTimeLocal(FIXED_TIME);
+        if (store) {
+            CRC32 crc = new CRC32();
+            crc.update(bytes, 0, length);
+            entry.setMethod(ZipEntry.STORED);
+            entry.setSize(length);
+            entry.setCompressedSize(length);
+            entry.setCrc(crc.getValue());
+        } else {
+            entry.setMethod(ZipEntry.DEFLATED);
+        }
+        return entry;
+    }
+}
@@ -0,0 +1,150 @@
+package dk.mosberg.generator;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.awt.image.BufferedImage;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A palette map (palette-map.schema.json): exact {@code from -> to} RGB replacements plus optional
+ * post adjustments. Everything that can be precomputed is: the {@code to} colors already have the
+ * post adjustments applied, contrast and brightness are folded into one 256-entry channel table,
+ * and only pixels that are not in the map pay for the saturation step.
+ */
+public final class PaletteMap {
+
+    private final String id;
+    private final String hash;
+    private final IntIntMap map;
+    private final int[] channelLut;
+    private final float saturation;
+
+    private PaletteMap(String id, String hash, IntIntMap map, int[] channelLut, float saturation) {
+        this.id = id;
+        this.hash = hash;
+        this.map = map;
+        this.channelLut = channelLut;
+        this.saturation = saturation;
+    }
+
+    public String id() {
+        return id;
+    }
+
+    /**
+     * Content hash of the source file, for change detection.
+     */
+    public String hash() {
+        return hash;
+    }
+
+    /**
+     * Loads every {@code palettes/*.json} under the input dir, keyed by palette id.
+     */
+    public static Map<String, PaletteMap> loadAll(Path inputDir, SchemaValidator validator)
+            throws Exception {
+        Path schemaPath = inputDir.resolve("schemas").resolve("palette-map.schema.json");
+        Map<String, PaletteMap> out = new LinkedHashMap<>();
+
+        for (Path f : FileUtils.listJsonFiles(inputDir.resolve("palettes"))) {
+            byte[] bytes = FileUtils.readBytes(f);
+            JsonElement json = JsonParser.parseString(new String(bytes, StandardCharsets.UTF_8));
+
+            List<ValidationError> errors = validator.validate(json, schemaPath);
+            if (!errors.isEmpty()) {
+                for (ValidationError err : errors)
+                    Log.error("Schema validation error: " + f + " -> " + err);
+                String msg = "Palette map failed schema validation: " + f;
+                if (validator.strict())
+                    throw new IllegalArgumentException(msg);
+                Log.warn(msg);
+                continue;
+            }
+
+            PaletteMap palette = fromJson(json.getAsJsonObject(), sha1(bytes));
+            out.put(palette.id(), palette);
+        }
+
+        if (!out.isEmpty())
+            Log.info("Loaded palette maps: " + out.size());
+        return out;
+    }
+
+    private static PaletteMap fromJson(JsonObject json, String hash) {
+        float contrast = 1f;
+        float brightness = 0f;
+        float saturation = 1f;
+        if (json.has("post")) {
+            JsonObject post = json.getAsJsonObject("post");
+            if (post.has("contrast"))
+                contrast = post.get("contrast").getAsFloat();
+            if (post.has("brightness"))
+                brightness = post.get("brightness").getAsFloat();
+            if (post.has("saturation"))
+                saturation = post.get("saturation").getAsFloat();
+        }
+
+        int[] channelLut = new int[256];
+        for (int c = 0; c < 256; c++)
+            channelLut[c] = clamp(Math.round((c - 128) * contrast + 128 + brightness * 255));
+
+        PaletteMap palette = new PaletteMap(json.get("id").getAsString(), hash,
+                new IntIntMap(json.getAsJsonArray("map").size()), channelLut, saturation);
+        for (JsonElement pair : json.getAsJsonArray("map")) {
+            int from = Integer.parseInt(pair.getAsJsonArray().get(0).getAsString(), 16);
+            int to = Integer.parseInt(pair.getAsJsonArray().get(1).getAsString(), 16);
+            palette.map.put(from, palette.post(to));
+        }
+        return palette;
+    }
+
+    /**
+     * Returns a recolored copy of {@code image}. Alpha is kept as is.
+     */
+    public BufferedImage apply(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        apply(TextureRecolorer.readArgb(image), TextureRecolorer.argbData(result), width * height);
+        return result;
+    }
+
+    public void apply(int[] src, int[] dst, int count) {
+        for (int i = 0; i < count; i++) {
+            int argb = src[i];
+            int rgb = argb & 0xFFFFFF;
+            // -1 can never be a 24-bit color, so it is a safe "not mapped" marker.
+            int mapped = map.get(rgb, -1);
+            dst[i] = (argb & 0xFF000000) | (mapped != -1 ? mapped : post(rgb));
+        }
+    }
+
+    private int post(int rgb) {
+        int r = channelLut[(rgb >>> 16) & 0xFF];
+        int g = channelLut[(rgb >>> 8) & 0xFF];
+        int b = channelLut[rgb & 0xFF];
+        if (saturation != 1f) {
+            float luma = 0.299f * r + 0.587f * g + 0.114f * b;
+            r = clamp(Math.round(luma + (r - luma) * saturation));
+            g = clamp(Math.round(luma + (g - luma) * saturation));
+            b = clamp(Math.round(luma + (b - luma) * saturation));
+        }
+        return (r << 16) | (g << 8) | b;
+    }
+
+    private static int clamp(int v) {
+        return v < 0 ? 0 : Math.min(v, 255);
+    }
+
+    private static String sha1(byte[] bytes) throws Exception {
+        return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-1").digest(bytes));
+    }
+}
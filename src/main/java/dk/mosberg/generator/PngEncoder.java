@@ -0,0 +1,268 @@
+package dk.mosberg.generator;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Small PNG encoder for textures. Images with at most 256 distinct ARGB values (nearly every
+ * Minecraft texture) are written as indexed PNGs at the smallest bit depth that fits, with a tRNS
+ * chunk for translucent entries; everything else is written as 8-bit RGB or RGBA. The output only
+ * depends on the pixels, the deflate level and the filter mode, so identical pixels always give
+ * identical bytes.
+ */
+public final class PngEncoder {
+
+    public enum Filter {
+        /** No filtering; best for indexed images and fastest. */
+        NONE,
+        /** Per row, the filter with the smallest sum of absolute differences (truecolor only). */
+        ADAPTIVE
+    }
+
+    private static final byte[] SIGNATURE = {(byte) 0x89, 'P', 'N', 'G', '\r', '\n', 0x1A, '\n'};
+    private static final int COLOR_RGB = 2;
+    private static final int COLOR_INDEXED = 3;
+    private static final int COLOR_RGBA = 6;
+
+    private final int level;
+    private final Filter filter;
+    private final ThreadLocal<Deflater> deflater;
+
+    public PngEncoder(int level, Filter filter) {
+        if (level < 0 || level > 9)
+            throw new IllegalArgumentException("PNG deflate level must be 0-9: " + level);
+        this.level = level;
+        this.filter = filter;
+        this.deflater = ThreadLocal.withInitial(() -> new Deflater(this.level));
+    }
+
+    public static PngEncoder defaults() {
+        return new PngEncoder(9, Filter.ADAPTIVE);
+    }
+
+    public byte[] encode(BufferedImage image) throws IOException {
+        return encode(image.getWidth(), image.getHeight(), TextureRecolorer.readArgb(image));
+    }
+
+    /**
+     * Encodes {@code width * height} packed non-premultiplied ARGB pixels.
+     */
+    public byte[] encode(int width, int height, int[] argb) throws IOException {
+        int count = width * height;
+        int[] palette = buildPalette(argb, count);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream(count + 256);
+        out.write(SIGNATURE);
+        if (palette != null) {
+            writeIndexed(out, width, height, argb, palette);
+        } else {
+            writeTruecolor(out, width, height, argb);
+        }
+        writeChunk(out, "IEND", new byte[0]);
+        return out.toByteArray();
+    }
+
+    /**
+     * Returns the distinct colors with translucent entries first (so tRNS can stop early), or null
+     * when there are more than 256.
+     */
+    private static int[] buildPalette(int[] argb, int count) {
+        IntIntMap seen = new IntIntMap(64);
+        int[] colors = new int[256];
+        int n = 0;
+        for (int i = 0; i < count; i++) {
+            int c = argb[i];
+            if (seen.containsKey(c))
+                continue;
+            if (n == 256)
+                return null;
+            seen.put(c, n);
+            colors[n++] = c;
+        }
+
+        int[] palette = new int[n];
+        int p = 0;
+        for (int i = 0; i < n; i++) {
+            if ((colors[i] >>> 24) != 0xFF)
+                palette[p++] = colors[i];
+        }
+        for (int i = 0; i < n; i++) {
+            if ((colors[i] >>> 24) == 0xFF)
+                palette[p++] = colors[i];
+        }
+        return palette;
+    }
+
+    private void writeIndexed(ByteArrayOutputStream out, int width, int height, int[] argb,
+            int[] palette) throws IOException {
+        int n = palette.length;
+        int bitDepth = n <= 2 ? 1 : n <= 4 ? 2 : n <= 16 ? 4 : 8;
+        writeChunk(out, "IHDR", header(width, height, bitDepth, COLOR_INDEXED));
+
+        byte[] plte = new byte[palette.length * 3];
+        int translucent = 0;
+        for (int i = 0; i < palette.length; i++) {
+            plte[i * 3] = (byte) (palette[i] >>> 16);
+            plte[i * 3 + 1] = (byte) (palette[i] >>> 8);
+            plte[i * 3 + 2] = (byte) palette[i];
+            if ((palette[i] >>> 24) != 0xFF)
+                translucent = i + 1;
+        }
+        writeChunk(out, "PLTE", plte);
+        if (translucent > 0) {
+            byte[] trns = new byte[translucent];
+            for (int i = 0; i < translucent; i++)
+                trns[i] = (byte) (palette[i] >>> 24);
+            writeChunk(out, "tRNS", trns);
+        }
+
+        IntIntMap index = new IntIntMap(palette.length);
+        for (int i = 0; i < palette.length; i++)
+            index.put(palette[i], i);
+
+        int perByte = 8 / bitDepth;
+        int stride = (width + perByte - 1) / perByte;
+        byte[] raw = new byte[height * (stride + 1)];
+        int pos = 0;
+        for (int y = 0; y < height; y++) {
+            raw[pos++] = 0; // filter: none
+            int row = y * width;
+            for (int x = 0; x < width; x++) {
+                int idx = index.get(argb[row + x], 0);
+                int shift = 8 - bitDepth * (x % perByte + 1);
+                raw[pos + x / perByte] |= (byte) (idx << shift);
+            }
+            pos += stride;
+        }
+        writeChunk(out, "IDAT", deflate(raw));
+    }
+
+    private void writeTruecolor(ByteArrayOutputStream out, int width, int height, int[] argb)
+            throws IOException {
+        boolean opaque = true;
+        for (int i = 0; i < width * height && opaque; i++)
+            opaque = (argb[i] >>> 24) == 0xFF;
+        int bpp = opaque ? 3 : 4;
+        writeChunk(out, "IHDR", header(width, height, 8, opaque ? COLOR_RGB : COLOR_RGBA));
+
+        int stride = width * bpp;
+        byte[] prev = new byte[stride];
+        byte[] cur = new byte[stride];
+        byte[][] candidates = new byte[5][stride];
+        byte[] raw = new byte[height * (stride + 1)];
+        int pos = 0;
+
+        for (int y = 0; y < height; y++) {
+            int row = y * width;
+            for (int x = 0, o = 0; x < width; x++) {
+                int c = argb[row + x];
+                cur[o++] = (byte) (c >>> 16);
+                cur[o++] = (byte) (c >>> 8);
+                cur[o++] = (byte) c;
+                if (!opaque)
+                    cur[o++] = (byte) (c >>> 24);
+            }
+
+            int type = 0;
+            byte[] line = cur;
+            if (filter == Filter.ADAPTIVE) {
+                long best = Long.MAX_VALUE;
+                for (int t = 0; t < 5; t++) {
+                    long sum = applyFilter(t, cur, prev, bpp, candidates[t]);
+                    if (sum < best) {
+                        best = sum;
+                        type = t;
+                    }
+                }
+                line = candidates[type];
+            }
+
+            raw[pos++] = (byte) type;
+            System.arraycopy(line, 0, raw, pos, stride);
+            pos += stride;
+
+            byte[] tmp = prev;
+            prev = cur;
+            cur = tmp;
+        }
+        writeChunk(out, "IDAT", deflate(raw));
+    }
+
+    /**
+     * Writes the filtered row into {@code dst} and returns its sum of absolute (signed) bytes.
+     */
+    private static long applyFilter(int type, byte[] cur, byte[] prev, int bpp, byte[] dst) {
+        long sum = 0;
+        for (int i = 0; i < cur.length; i++) {
+            int x = cur[i] & 0xFF;
+            int a = i >= bpp ? cur[i - bpp] & 0xFF : 0;
+            int b = prev[i] & 0xFF;
+            int c = i >= bpp ? prev[i - bpp] & 0xFF : 0;
+            int v = switch (type) {
+                case 0 -> x;
+                case 1 -> x - a;
+                case 2 -> x - b;
+                case 3 -> x - ((a + b) >>> 1);
+                default -> x - paeth(a, b, c);
+            };
+            dst[i] = (byte) v;
+            sum += Math.abs((byte) v);
+        }
+        return sum;
+    }
+
+    private static int paeth(int a, int b, int c) {
+        int p = a + b - c;
+        int pa = Math.abs(p - a);
+        int pb = Math.abs(p - b);
+        int pc = Math.abs(p - c);
+        if (pa <= pb && pa <= pc)
+            return a;
+        return pb <= pc ? b : c;
+    }
+
+    private byte[] deflate(byte[] raw) throws IOException {
+        Deflater def = deflater.get();
+        def.reset();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(raw.length / 2 + 64);
+        // An externally supplied Deflater is not ended on close, so it can be reused.
+        try (DeflaterOutputStream dos = new DeflaterOutputStream(buf, def, 8192)) {
+            dos.write(raw);
+        }
+        return buf.toByteArray();
+    }
+
+    private static byte[] header(int width, int height, int bitDepth, int colorType)
+            throws IOException {
+        ByteArrayOutputStream buf = new ByteArrayOutputStream(13);
+        DataOutputStream data = new DataOutputStream(buf);
+        data.writeInt(width);
+        data.writeInt(height);
+        data.writeByte(bitDepth);
+        data.writeByte(colorType);
+        data.writeByte(0); // compression
+        data.writeByte(0); // filter method
+        data.writeByte(0); // no interlace
+        return buf.toByteArray();
+    }
+
+    private static void writeChunk(ByteArrayOutputStream out, String type, byte[] data)
+            throws IOException {
+        byte[] typeBytes = type.getBytes(StandardCharsets.US_ASCII);
+        CRC32 crc = new CRC32();
+        crc.update(typeBytes);
+        crc.update(data);
+
+        DataOutputStream dos = new DataOutputStream(out);
+        dos.writeInt(data.length);
+        dos.write(typeBytes);
+        dos.write(data);
+        dos.writeInt((int) crc.getValue());
+    }
+}
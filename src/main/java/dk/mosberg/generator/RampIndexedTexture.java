@@ -0,0 +1,72 @@
+package dk.mosberg.generator;
+
+import java.awt.image.BufferedImage;
+
+/**
+ * A base texture reduced to one ramp index and one alpha byte per pixel. Producing a variant is a
+ * single table lookup per pixel: index -> target ramp color, alpha copied through.
+ */
+public final class RampIndexedTexture {
+
+    private final int width;
+    private final int height;
+    private final int baseRampSize;
+    private final byte[] index;
+    private final byte[] alpha;
+
+    private RampIndexedTexture(int width, int height, int baseRampSize, byte[] index,
+            byte[] alpha) {
+        this.width = width;
+        this.height = height;
+        this.baseRampSize = baseRampSize;
+        this.index = index;
+        this.alpha = alpha;
+    }
+
+    /**
+     * Maps every pixel of {@code image} to its nearest color in {@code baseRamp}. Each distinct
+     * color is only matched against the ramp once.
+     */
+    public static RampIndexedTexture build(BufferedImage image, ColorRamp baseRamp) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int count = width * height;
+        int[] argb = TextureRecolorer.readArgb(image);
+
+        byte[] index = new byte[count];
+        byte[] alpha = new byte[count];
+        IntIntMap nearest = new IntIntMap(64);
+        for (int i = 0; i < count; i++) {
+            int rgb = argb[i] & 0xFFFFFF;
+            int idx = nearest.get(rgb, -1);
+            if (idx < 0) {
+                idx = baseRamp.nearest(rgb);
+                nearest.put(rgb, idx);
+            }
+            index[i] = (byte) idx;
+            alpha[i] = (byte) (argb[i] >>> 24);
+        }
+        return new RampIndexedTexture(width, height, baseRamp.size(), index, alpha);
+    }
+
+    /**
+     * Renders this texture with {@code target}'s colors. Ramps of a different length are resampled
+     * so the darkest and lightest entries still line up. Fully transparent pixels stay 0.
+     */
+    public BufferedImage recolor(ColorRamp target) {
+        int[] lut = new int[baseRampSize];
+        int last = Math.max(1, baseRampSize - 1);
+        for (int i = 0; i < baseRampSize; i++) {
+            int t = Math.round(i * (target.size() - 1) / (float) last);
+            lut[i] = target.colors()[t] & 0xFFFFFF;
+        }
+
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = TextureRecolorer.argbData(result);
+        for (int i = 0; i < dst.length; i++) {
+            int a = alpha[i] & 0xFF;
+            dst[i] = a == 0 ? 0 : (a << 24) | lut[index[i]];
+        }
+        return result;
+    }
+}
@@ -0,0 +1,15 @@
+package dk.mosberg.generator;
+
+import java.util.Map;
+
+/**
+ * Everything a material may be recolored with: palette maps and ramps by id, plus the shared cache
+ * of ramp-indexed base textures.
+ */
+public record RecolorSources(Map<String, PaletteMap> palettes, Map<String, ColorRamp> ramps,
+        BaseTextureCache baseTextures) {
+
+    public static RecolorSources empty() {
+        return new RecolorSources(Map.of(), Map.of(), new BaseTextureCache());
+    }
+}
@@ -1,24 +1,40 @@
 package dk.mosberg.generator;
 
 import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
+import com.google.gson.JsonPrimitive;
 
 /**
- * Pragmatic JSON schema validator for this generator. Supports the subset used by your schemas: -
- * type, required, properties, additionalProperties, enum, const - min/max length, min/max items -
- * pattern for strings - $ref to other files and #/$defs paths - oneOf (tries each branch)
+ * Pragmatic JSON schema validator for this generator. Each schema file is compiled once into an
+ * immutable tree of {@link Node}s (patterns precompiled, $refs resolved to their target node) and
+ * reused for every instance. Validation never throws; violations are collected as
+ * {@link ValidationError}s with JSON-pointer paths.
+ *
+ * Supports the subset used by our schemas: - type, required, properties, patternProperties,
+ * additionalProperties, propertyNames, min/max properties, enum, const - min/max length and pattern
+ * for strings - minimum/maximum for numbers - min/max items, items, prefixItems - $ref to other
+ * files and #/$defs paths - oneOf (first matching branch wins, like before)
  */
 public final class SchemaValidator {
 
     private final Path schemaDir;
     private final boolean strict;
-    private final Map<Path, JsonObject> schemaCache = new ConcurrentHashMap<>();
+    private final Map<Path, Node> compiledCache = new ConcurrentHashMap<>();
+
+    // Compile-time state, guarded by "this".
+    private final Map<Path, JsonObject> rawCache = new HashMap<>();
+    private final Map<String, RefNode> refNodes = new HashMap<>();
 
     public SchemaValidator(Path schemaDir, boolean strict) {
         this.schemaDir = schemaDir;
@@ -29,22 +45,77 @@ public final class SchemaValidator {
         return strict;
     }
 
+    /**
+     * Drops all cached schemas so the next validation rereads and recompiles them.
+     */
+    public synchronized void clearCache() {
+        compiledCache.clear();
+        rawCache.clear();
+        refNodes.clear();
+    }
+
     public boolean validateFile(Path jsonFile, Path schemaFile) {
+        List<ValidationError> errors;
         try {
             JsonElement json = JsonParser.parseString(FileUtils.readString(jsonFile));
-            JsonObject schema = loadSchema(schemaFile);
-            validate(json, schema, schemaFile);
-            return true;
+            errors = validate(json, schemaFile);
         } catch (Exception e) {
             Log.error("Schema validation error: " + jsonFile + " -> " + e.getMessage());
-            if (strict)
-                Log.error("Validation stack:", e);
             return false;
         }
+
+        for (ValidationError err : errors)
+            Log.error("Schema validation error: " + jsonFile + " -> " + err);
+        return errors.isEmpty();
+    }
+
+    /**
+     * Validates {@code instance} against the schema file and returns every violation found (empty
+     * when valid). Safe to call from several threads.
+     */
+    public List<ValidationError> validate(JsonElement instance, Path schemaFile) {
+        Node schema = compiled(schemaFile);
+        List<ValidationError> errors = new ArrayList<>();
+        try (var span = Metrics.span(Metrics.Phase.VALIDATE, schemaFile.getFileName())) {
+            schema.validate(instance, Pointer.ROOT, errors);
+        }
+        return errors;
+    }
+
+    private Node compiled(Path schemaFile) {
+        Path key = schemaFile.normalize();
+        Node node = compiledCache.get(key);
+        if (node != null)
+            return node;
+
+        synchronized (this) {
+            try (var span = Metrics.span(Metrics.Phase.SCHEMA_LOAD, key.getFileName())) {
+                return compiledCache.computeIfAbsent(key, this::compileFile);
+            }
+        }
+    }
+
+    /**
+     * Compiles a schema file. If that fails (unreadable file, bad $ref pointer) every placeholder
+     * the attempt created is dropped again: one left behind would have no target, and the next
+     * schema referencing it would fail validation with an NPE instead of the schema error.
+     */
+    private Node compileFile(Path file) {
+        Set<String> before = new HashSet<>(refNodes.keySet());
+        try {
+            return ref(file, "");
+        } catch (RuntimeException e) {
+            refNodes.keySet().retainAll(before);
+            throw e;
+        }
     }
 
-    private JsonObject loadSchema(Path schemaFile) {
-        return schemaCache.computeIfAbsent(schemaFile.normalize(), p -> {
+    // ─────────────────────────────────────────────────────────────────────────
+    // Compilation
+    // ─────────────────────────────────────────────────────────────────────────
+
+    private JsonObject loadRaw(Path schemaFile) {
+        return rawCache.computeIfAbsent(schemaFile.normalize(), p -> {
             try {
                 return JsonParser.parseString(FileUtils.readString(p)).getAsJsonObject();
             } catch (Exception e) {
@@ -54,169 +125,154 @@ public final class SchemaValidator {
         });
     }
 
-    private void validate(JsonElement instance, JsonObject schema, Path currentSchemaFile) {
-        // Resolve $ref
-        if (schema.has("$ref")) {
-            JsonObject resolved = resolveRef(schema.get("$ref").getAsString(), currentSchemaFile);
-            validate(instance, resolved, currentSchemaFile);
-            return;
-        }
+    /**
+     * Returns the node for {@code file#pointer}, compiling it on first use. Going through a
+     * {@link RefNode} placeholder keeps recursive schemas from compiling forever.
+     */
+    private RefNode ref(Path file, String pointer) {
+        String key = file + "#" + pointer;
+        RefNode node = refNodes.get(key);
+        if (node != null)
+            return node;
+
+        node = new RefNode();
+        refNodes.put(key, node);
+        JsonObject root = loadRaw(file);
+        node.target = compile(pointer.isEmpty() ? root : resolvePointer(root, pointer), file);
+        return node;
+    }
+
+    private Node compile(JsonElement schemaEl, Path file) {
+        if (schemaEl.isJsonPrimitive() && schemaEl.getAsJsonPrimitive().isBoolean())
+            return schemaEl.getAsBoolean() ? AcceptNode.INSTANCE : RejectNode.INSTANCE;
+        JsonObject schema = schemaEl.getAsJsonObject();
+
+        // $ref and oneOf replace the rest of the schema, as they always have here.
+        if (schema.has("$ref"))
+            return resolveRef(schema.get("$ref").getAsString(), file);
 
-        // oneOf
         if (schema.has("oneOf")) {
             JsonArray arr = schema.getAsJsonArray("oneOf");
-            for (JsonElement option : arr) {
-                try {
-                    validate(instance, option.getAsJsonObject(), currentSchemaFile);
-                    return;
-                } catch (Exception ignored) {
-                }
-            }
-            throw new IllegalArgumentException("oneOf: no option matched.");
+            Node[] options = new Node[arr.size()];
+            for (int i = 0; i < options.length; i++)
+                options[i] = compile(arr.get(i), file);
+            return new OneOfNode(options);
         }
 
-        // type
-        if (schema.has("type")) {
-            String type = schema.get("type").getAsString();
-            if (!matchesType(instance, type)) {
-                throw new IllegalArgumentException("Expected type '" + type + "'");
-            }
-        }
+        List<Node> checks = new ArrayList<>();
 
-        // const
-        if (schema.has("const")) {
-            JsonElement c = schema.get("const");
-            if (!c.equals(instance)) {
-                throw new IllegalArgumentException("Expected const " + c + " but got " + instance);
-            }
+        if (schema.has("type"))
+            checks.add(new TypeNode(schema.get("type").getAsString()));
+        if (schema.has("const"))
+            checks.add(new ConstNode(schema.get("const")));
+        if (schema.has("enum"))
+            checks.add(new EnumNode(schema.getAsJsonArray("enum")));
+
+        if (schema.has("minLength") || schema.has("maxLength") || schema.has("pattern")) {
+            checks.add(new StringNode(intOr(schema, "minLength", -1),
+                    intOr(schema, "maxLength", -1),
+                    schema.has("pattern") ? Pattern.compile(schema.get("pattern").getAsString())
+                            : null));
         }
 
-        // enum
-        if (schema.has("enum")) {
-            boolean ok = false;
-            for (JsonElement e : schema.getAsJsonArray("enum")) {
-                if (e.equals(instance)) {
-                    ok = true;
-                    break;
-                }
-            }
-            if (!ok)
-                throw new IllegalArgumentException("Value not in enum: " + instance);
+        if (schema.has("minimum") || schema.has("maximum")) {
+            checks.add(new NumberNode(
+                    schema.has("minimum") ? schema.get("minimum").getAsDouble()
+                            : Double.NEGATIVE_INFINITY,
+                    schema.has("maximum") ? schema.get("maximum").getAsDouble()
+                            : Double.POSITIVE_INFINITY));
         }
 
-        // string constraints
-        if (instance.isJsonPrimitive() && instance.getAsJsonPrimitive().isString()) {
-            String s = instance.getAsString();
-            if (schema.has("minLength") && s.length() < schema.get("minLength").getAsInt()) {
-                throw new IllegalArgumentException("minLength violated");
-            }
-            if (schema.has("maxLength") && s.length() > schema.get("maxLength").getAsInt()) {
-                throw new IllegalArgumentException("maxLength violated");
-            }
-            if (schema.has("pattern")) {
-                Pattern p = Pattern.compile(schema.get("pattern").getAsString());
-                if (!p.matcher(s).matches())
-                    throw new IllegalArgumentException("pattern violated");
+        if (schema.has("minItems") || schema.has("maxItems") || schema.has("items")
+                || schema.has("prefixItems")) {
+            Node[] prefix = new Node[0];
+            if (schema.has("prefixItems")) {
+                JsonArray arr = schema.getAsJsonArray("prefixItems");
+                prefix = new Node[arr.size()];
+                for (int i = 0; i < prefix.length; i++)
+                    prefix[i] = compile(arr.get(i), file);
             }
+            Node items = schema.has("items") ? compile(schema.get("items"), file) : null;
+            checks.add(new ArrayNode(intOr(schema, "minItems", -1), intOr(schema, "maxItems", -1),
+                    prefix, items));
         }
 
-        // array constraints
-        if (instance.isJsonArray()) {
-            JsonArray arr = instance.getAsJsonArray();
-            if (schema.has("minItems") && arr.size() < schema.get("minItems").getAsInt()) {
-                throw new IllegalArgumentException("minItems violated");
-            }
-            if (schema.has("maxItems") && arr.size() > schema.get("maxItems").getAsInt()) {
-                throw new IllegalArgumentException("maxItems violated");
-            }
-            if (schema.has("items")) {
-                JsonObject itemsSchema = schema.getAsJsonObject("items");
-                for (JsonElement el : arr)
-                    validate(el, itemsSchema, currentSchemaFile);
-            }
+        if (schema.has("required") || schema.has("properties") || schema.has("patternProperties")
+                || schema.has("additionalProperties") || schema.has("propertyNames")
+                || schema.has("minProperties") || schema.has("maxProperties")) {
+            checks.add(compileObject(schema, file));
         }
 
-        // object constraints
-        if (instance.isJsonObject()) {
-            JsonObject obj = instance.getAsJsonObject();
+        if (checks.isEmpty())
+            return AcceptNode.INSTANCE;
+        if (checks.size() == 1)
+            return checks.get(0);
+        return new AllNode(checks.toArray(new Node[0]));
+    }
 
-            if (schema.has("required")) {
-                for (JsonElement req : schema.getAsJsonArray("required")) {
-                    String k = req.getAsString();
-                    if (!obj.has(k))
-                        throw new IllegalArgumentException("Missing required field: " + k);
-                }
-            }
+    private Node compileObject(JsonObject schema, Path file) {
+        String[] required = new String[0];
+        if (schema.has("required")) {
+            JsonArray arr = schema.getAsJsonArray("required");
+            required = new String[arr.size()];
+            for (int i = 0; i < required.length; i++)
+                required[i] = arr.get(i).getAsString();
+        }
 
-            if (schema.has("properties")) {
-                JsonObject props = schema.getAsJsonObject("properties");
-                for (Map.Entry<String, JsonElement> e : props.entrySet()) {
-                    String key = e.getKey();
-                    if (obj.has(key)) {
-                        validate(obj.get(key), e.getValue().getAsJsonObject(), currentSchemaFile);
-                    }
-                }
-            }
+        Map<String, Node> properties = new HashMap<>();
+        if (schema.has("properties")) {
+            for (Map.Entry<String, JsonElement> e : schema.getAsJsonObject("properties")
+                    .entrySet())
+                properties.put(e.getKey(), compile(e.getValue(), file));
+        }
 
-            if (schema.has("additionalProperties")
-                    && !schema.get("additionalProperties").getAsBoolean()) {
-                // Only enforce if we know the "properties" set.
-                if (schema.has("properties")) {
-                    JsonObject props = schema.getAsJsonObject("properties");
-                    for (String key : obj.keySet()) {
-                        if (!props.has(key)) {
-                            throw new IllegalArgumentException(
-                                    "additionalProperties=false but found: " + key);
-                        }
-                    }
-                }
+        List<Pattern> patterns = new ArrayList<>();
+        List<Node> patternNodes = new ArrayList<>();
+        if (schema.has("patternProperties")) {
+            for (Map.Entry<String, JsonElement> e : schema.getAsJsonObject("patternProperties")
+                    .entrySet()) {
+                patterns.add(Pattern.compile(e.getKey()));
+                patternNodes.add(compile(e.getValue(), file));
             }
         }
-    }
 
-    private boolean matchesType(JsonElement el, String type) {
-        return switch (type) {
-            case "object" -> el.isJsonObject();
-            case "array" -> el.isJsonArray();
-            case "string" -> el.isJsonPrimitive() && el.getAsJsonPrimitive().isString();
-            case "boolean" -> el.isJsonPrimitive() && el.getAsJsonPrimitive().isBoolean();
-            case "integer" -> el.isJsonPrimitive() && el.getAsJsonPrimitive().isNumber()
-                    && isInteger(el.getAsDouble());
-            case "number" -> el.isJsonPrimitive() && el.getAsJsonPrimitive().isNumber();
-            default -> true; // unknown types ignored
-        };
+        Node additional = null;
+        if (schema.has("additionalProperties"))
+            additional = compile(schema.get("additionalProperties"), file);
+
+        Node names = schema.has("propertyNames") ? compile(schema.get("propertyNames"), file)
+                : null;
+
+        return new ObjectNode(required, Map.copyOf(properties), patterns.toArray(new Pattern[0]),
+                patternNodes.toArray(new Node[0]), additional, names,
+                intOr(schema, "minProperties", -1), intOr(schema, "maxProperties", -1));
     }
 
-    private boolean isInteger(double d) {
-        return Math.floor(d) == d && !Double.isInfinite(d) && !Double.isNaN(d);
+    private static int intOr(JsonObject schema, String key, int fallback) {
+        return schema.has(key) ? schema.get(key).getAsInt() : fallback;
     }
 
-    private JsonObject resolveRef(String ref, Path currentSchemaFile) {
+    private Node resolveRef(String ref, Path currentSchemaFile) {
         // Examples in your schemas:
         // - "common.schema.json#/$defs/snakeId"
         // - "#/$defs/hex6"
-        if (ref.startsWith("#/")) {
-            JsonObject base = loadSchema(currentSchemaFile);
-            return resolvePointer(base, ref.substring(2));
+        if (ref.startsWith("#")) {
+            return ref(currentSchemaFile.normalize(), stripSlash(ref.substring(1)));
         }
 
         String[] parts = ref.split("#", 2);
         Path target = schemaDir.resolve(parts[0]).normalize();
-        JsonObject root = loadSchema(target);
+        return ref(target, parts.length == 1 ? "" : stripSlash(parts[1]));
+    }
 
-        if (parts.length == 1)
-            return root;
-        String pointer = parts[1];
-        if (pointer.startsWith("/"))
-            pointer = pointer.substring(1);
-        return resolvePointer(root, pointer);
+    private static String stripSlash(String pointer) {
+        return pointer.startsWith("/") ? pointer.substring(1) : pointer;
     }
 
-    private JsonObject resolvePointer(JsonObject root, String pointer) {
+    private JsonElement resolvePointer(JsonObject root, String pointer) {
         // Supports pointers like: $defs/snakeId
-        String[] segs = pointer.split("/");
         JsonElement cur = root;
-        for (String seg : segs) {
+        for (String seg : pointer.split("/")) {
             if (!cur.isJsonObject())
                 throw new IllegalArgumentException("Invalid $ref pointer: " + pointer);
             JsonObject o = cur.getAsJsonObject();
@@ -226,6 +282,245 @@ public final class SchemaValidator {
         }
         if (!cur.isJsonObject())
             throw new IllegalArgumentException("$ref did not resolve to object: " + pointer);
-        return cur.getAsJsonObject();
+        return cur;
+    }
+
+    // ─────────────────────────────────────────────────────────────────────────
+    // Validator nodes
+    // ─────────────────────────────────────────────────────────────────────────
+
+    /**
+     * Location inside the instance, built as a cheap linked list and only rendered to a JSON
+     * pointer string when an error is reported.
+     */
+    private record Pointer(Pointer parent, String token) {
+        static final Pointer ROOT = new Pointer(null, null);
+
+        Pointer child(String key) {
+            return new Pointer(this, key);
+        }
+
+        @Override
+        public String toString() {
+            if (parent == null)
+                return "";
+            return parent + "/" + token.replace("~", "~0").replace("/", "~1");
+        }
+    }
+
+    /**
+     * A compiled schema. {@code errors} may be null, in which case the node stops at the first
+     * violation and only reports the outcome (used to try oneOf branches cheaply).
+     */
+    private interface Node {
+        boolean validate(JsonElement instance, Pointer at, List<ValidationError> errors);
+    }
+
+    private static boolean fail(List<ValidationError> errors, Pointer at, String message) {
+        if (errors != null)
+            errors.add(new ValidationError(at.toString(), message));
+        return false;
+    }
+
+    private static final class AcceptNode implements Node {
+        static final AcceptNode INSTANCE = new AcceptNode();
+
+        @Override
+        public boolean validate(JsonElement instance, Pointer at, List<ValidationError> errors) {
+            return true;
+        }
+    }
+
+    private static final class RejectNode implements Node {
+        static final RejectNode INSTANCE = new RejectNode();
+
+        @Override
+        public boolean validate(JsonElement instance, Pointer at, List<ValidationError> errors) {
+            return fail(errors, at, "Value not allowed here");
+        }
+    }
+
+    private static final class RefNode implements Node {
+        // Set once during compilation, before the tree is published through compiledCache.
+        Node target;
+
+        @Override
+        public boolean validate(JsonElement instance, Pointer at, List<ValidationError> errors) {
+            return target.validate(instance, at, errors);
+        }
+    }
+
+    private record AllNode(Node[] checks) implements Node {
+        @Override
+        public boolean validate(JsonElement instance, Pointer at, List<ValidationError> errors) {
+            boolean ok = true;
+            for (Node check : checks) {
+                if (!check.validate(instance, at, errors)) {
+                    ok = false;
+                    if (errors == null)
+                        return false;
+                }
+            }
+            return ok;
+        }
+    }
+
+    private record OneOfNode(Node[] options) implements Node {
+        @Override
+        public boolean validate(JsonElement instance, Pointer at, List<ValidationError> errors) {
+            for (Node option : options) {
+                if (option.validate(instance, at, null))
+                    return true;
+            }
+            return fail(errors, at, "oneOf: no option matched.");
+        }
+    }
+
+    private record TypeNode(String type) implements Node {
+        @Override
+        public boolean validate(JsonElement el, Pointer at, List<ValidationError> errors) {
+            boolean ok = switch (type) {
+                case "object" -> el.isJsonObject();
+                case "array" -> el.isJsonArray();
+                case "string" -> el.isJsonPrimitive() && el.getAsJsonPrimitive().isString();
+                case "boolean" -> el.isJsonPrimitive() && el.getAsJsonPrimitive().isBoolean();
+                case "integer" -> el.isJsonPrimitive() && el.getAsJsonPrimitive().isNumber()
+                        && isInteger(el.getAsDouble());
+                case "number" -> el.isJsonPrimitive() && el.getAsJsonPrimitive().isNumber();
+                default -> true; // unknown types ignored
+            };
+            return ok || fail(errors, at, "Expected type '" + type + "'");
+        }
+
+        private static boolean isInteger(double d) {
+            return Math.floor(d) == d && !Double.isInfinite(d) && !Double.isNaN(d);
+        }
+    }
+
+    private record ConstNode(JsonElement value) implements Node {
+        @Override
+        public boolean validate(JsonElement instance, Pointer at, List<ValidationError> errors) {
+            return value.equals(instance)
+                    || fail(errors, at, "Expected const " + value + " but got " + instance);
+        }
+    }
+
+    private record EnumNode(JsonArray values) implements Node {
+        @Override
+        public boolean validate(JsonElement instance, Pointer at, List<ValidationError> errors) {
+            return values.contains(instance) || fail(errors, at, "Value not in enum: " + instance);
+        }
+    }
+
+    private record StringNode(int minLength, int maxLength, Pattern pattern) implements Node {
+        @Override
+        public boolean validate(JsonElement instance, Pointer at, List<ValidationError> errors) {
+            if (!instance.isJsonPrimitive() || !instance.getAsJsonPrimitive().isString())
+                return true;
+            String s = instance.getAsString();
+            boolean ok = true;
+            if (minLength >= 0 && s.length() < minLength)
+                ok = fail(errors, at, "minLength violated");
+            if (maxLength >= 0 && s.length() > maxLength)
+                ok = fail(errors, at, "maxLength violated");
+            if (pattern != null && (ok || errors != null) && !pattern.matcher(s).matches())
+                ok = fail(errors, at, "pattern violated");
+            return ok;
+        }
+    }
+
+    private record NumberNode(double minimum, double maximum) implements Node {
+        @Override
+        public boolean validate(JsonElement instance, Pointer at, List<ValidationError> errors) {
+            if (!instance.isJsonPrimitive() || !instance.getAsJsonPrimitive().isNumber())
+                return true;
+            double d = instance.getAsDouble();
+            if (d < minimum)
+                return fail(errors, at, "minimum violated");
+            if (d > maximum)
+                return fail(errors, at, "maximum violated");
+            return true;
+        }
+    }
+
+    private record ArrayNode(int minItems, int maxItems, Node[] prefixItems, Node items)
+            implements Node {
+        @Override
+        public boolean validate(JsonElement instance, Pointer at, List<ValidationError> errors) {
+            if (!instance.isJsonArray())
+                return true;
+            JsonArray arr = instance.getAsJsonArray();
+            boolean ok = true;
+            if (minItems >= 0 && arr.size() < minItems)
+                ok = fail(errors, at, "minItems violated");
+            if (maxItems >= 0 && arr.size() > maxItems)
+                ok = fail(errors, at, "maxItems violated");
+
+            for (int i = 0; i < arr.size() && (ok || errors != null); i++) {
+                Node node = i < prefixItems.length ? prefixItems[i] : items;
+                if (node != null && !node.validate(arr.get(i), at.child(Integer.toString(i)),
+                        errors))
+                    ok = false;
+            }
+            return ok;
+        }
+    }
+
+    private record ObjectNode(String[] required, Map<String, Node> properties,
+            Pattern[] patterns, Node[] patternNodes, Node additional, Node propertyNames,
+            int minProperties, int maxProperties) implements Node {
+        @Override
+        public boolean validate(JsonElement instance, Pointer at, List<ValidationError> errors) {
+            if (!instance.isJsonObject())
+                return true;
+            JsonObject obj = instance.getAsJsonObject();
+            boolean ok = true;
+
+            for (String k : required) {
+                if (!obj.has(k)) {
+                    ok = fail(errors, at, "Missing required field: " + k);
+                    if (errors == null)
+                        return false;
+                }
+            }
+            if (minProperties >= 0 && obj.size() < minProperties)
+                ok = fail(errors, at, "minProperties violated");
+            if (maxProperties >= 0 && obj.size() > maxProperties)
+                ok = fail(errors, at, "maxProperties violated");
+
+            for (Map.Entry<String, JsonElement> e : obj.entrySet()) {
+                if (!ok && errors == null)
+                    return false;
+                String key = e.getKey();
+                Pointer child = at.child(key);
+
+                if (propertyNames != null
+                        && !propertyNames.validate(new JsonPrimitive(key), child, errors))
+                    ok = false;
+
+                boolean matched = false;
+                Node prop = properties.get(key);
+                if (prop != null) {
+                    matched = true;
+                    if (!prop.validate(e.getValue(), child, errors))
+                        ok = false;
+                }
+                for (int i = 0; i < patterns.length; i++) {
+                    if (patterns[i].matcher(key).find()) {
+                        matched = true;
+                        if (!patternNodes[i].validate(e.getValue(), child, errors))
+                            ok = false;
+                    }
+                }
+                if (!matched && additional != null) {
+                    if (additional == RejectNode.INSTANCE) {
+                        ok = fail(errors, at, "additionalProperties=false but found: " + key);
+                    } else if (!additional.validate(e.getValue(), child, errors)) {
+                        ok = false;
+                    }
+                }
+            }
+            return ok;
+        }
     }
 }
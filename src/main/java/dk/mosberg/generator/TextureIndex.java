@@ -0,0 +1,125 @@
+package dk.mosberg.generator;
+
+import java.io.IOException;
+import java.nio.file.FileSystemLoopException;
+import java.nio.file.FileVisitOption;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The input {@code textures/} tree, walked once per run: every file's input-relative path with the
+ * attributes the walk already read (size, mtime, file key). Texture lookups, overrides and
+ * missing-texture checks go through the index instead of a stat per material, and copies reuse
+ * the attributes. Every lookup marks the texture used, so the ones no material references can be
+ * reported at the end of the run.
+ * <p>
+ * Paths outside {@code textures/} (an override may point anywhere in the input dir) are looked up
+ * on disk.
+ */
+public final class TextureIndex {
+
+    /** An input texture and its attributes as of the walk; {@code rel} is input-relative. */
+    public record Texture(String rel, Path file, BasicFileAttributes attrs) {
+
+        public long size() {
+            return attrs.size();
+        }
+
+        public long modified() {
+            return attrs.lastModifiedTime().toMillis();
+        }
+    }
+
+    private static final String ROOT = "textures/";
+
+    private final Path inputDir;
+    private final Map<String, Texture> textures;
+    private final Set<String> used = ConcurrentHashMap.newKeySet();
+
+    private TextureIndex(Path inputDir, Map<String, Texture> textures) {
+        this.inputDir = inputDir;
+        this.textures = textures;
+    }
+
+    public static TextureIndex scan(Path inputDir) throws IOException {
+        Map<String, Texture> textures = new HashMap<>();
+        Path dir = inputDir.resolve("textures");
+        if (Files.isDirectory(dir)) {
+            // Texture trees are often symlinked in from elsewhere; follow links like a stat would.
+            Files.walkFileTree(dir, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE,
+                    new SimpleFileVisitor<>() {
+                        @Override
+                        public FileVisitResult visitFile(Path p, BasicFileAttributes attrs) {
+                            if (attrs.isRegularFile()) {
+                                String rel = portable(inputDir.relativize(p).toString());
+                                textures.put(rel, new Texture(rel, p, attrs));
+                            }
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path p, IOException e)
+                                throws IOException {
+                            if (e instanceof FileSystemLoopException)
+                                return FileVisitResult.CONTINUE;
+                            throw e;
+                        }
+                    });
+        }
+        Log.debug("Indexed textures: {}", textures.size());
+        return new TextureIndex(inputDir, textures);
+    }
+
+    /**
+     * The texture at input-relative {@code rel}, or null if there is none.
+     */
+    public Texture lookup(String rel) throws IOException {
+        String key = portable(rel);
+        if (key.startsWith(ROOT)) {
+            used.add(key);
+            return textures.get(key);
+        }
+
+        Path file = inputDir.resolve(rel);
+        try {
+            BasicFileAttributes attrs = Files.readAttributes(file, BasicFileAttributes.class);
+            return attrs.isRegularFile() ? new Texture(key, file, attrs) : null;
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    /** Input-relative paths of every indexed file. */
+    public Set<String> paths() {
+        return textures.keySet();
+    }
+
+    /**
+     * Indexed PNGs that no {@link #lookup} asked for, sorted.
+     */
+    public List<String> unused() {
+        List<String> out = new ArrayList<>();
+        for (String rel : textures.keySet()) {
+            if (rel.endsWith(".png") && !used.contains(rel))
+                out.add(rel);
+        }
+        out.sort(null);
+        return out;
+    }
+
+    private static String portable(String rel) {
+        return Paths.get(rel).normalize().toString().replace('\\', '/');
+    }
+}
@@ -2,11 +2,40 @@ package dk.mosberg.generator;
 
 import java.awt.Color;
 import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.IOException;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
 
+/**
+ * Recolors textures by working on packed ARGB {@code int[]} arrays instead of going through
+ * {@code getRGB}/{@code setRGB} per pixel. {@code TYPE_INT_ARGB} images are read straight from
+ * their backing {@link DataBufferInt}; anything else is converted once with a bulk
+ * {@code getRGB} into a per-thread scratch buffer.
+ */
 public final class TextureRecolorer {
 
+    private static final ThreadLocal<int[]> SCRATCH = ThreadLocal.withInitial(() -> new int[0]);
+    // Materials sharing a tint usually follow each other, so one set of tables per thread is
+    // enough to skip rebuilding them; -1 never matches an RGB tint.
+    private static final ThreadLocal<MultiplyLuts> LUTS =
+            ThreadLocal.withInitial(() -> new MultiplyLuts(-1, null, null, null));
+
     private TextureRecolorer() {}
 
+    /**
+     * Decodes a texture. The one place ImageIO is touched, so runs that only copy textures or write
+     * JSON never initialise it (or Java2D).
+     */
+    public static BufferedImage read(Path texture) throws IOException {
+        BufferedImage image = ImageIO.read(texture.toFile());
+        if (image == null)
+            throw new IOException("Not a readable image: " + texture);
+        return image;
+    }
+
     /**
      * Multiply-tint recolor (keeps alpha).
      */
@@ -15,28 +44,86 @@ public final class TextureRecolorer {
         int height = base.getHeight();
 
         BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        recolorMultiply(readArgb(base), argbData(result), width * height, tint.getRGB());
+        return result;
+    }
 
-        int tr = tint.getRed();
-        int tg = tint.getGreen();
-        int tb = tint.getBlue();
-
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++) {
-                int argb = base.getRGB(x, y);
-                int a = (argb >>> 24) & 0xFF;
-                int r = (argb >>> 16) & 0xFF;
-                int g = (argb >>> 8) & 0xFF;
-                int b = (argb) & 0xFF;
-
-                int nr = (r * tr) / 255;
-                int ng = (g * tg) / 255;
-                int nb = (b * tb) / 255;
-
-                int out = (a << 24) | (nr << 16) | (ng << 8) | nb;
-                result.setRGB(x, y, out);
-            }
+    /**
+     * Multiplies the first {@code count} pixels of {@code src} by {@code tint} (alpha ignored) into
+     * {@code dst}. Each channel goes through a 256-entry table holding {@code (c * t) / 255}, so the
+     * result is bit-identical to the per-pixel integer formula without any divides in the loop.
+     * The tables for the last tint are kept per thread.
+     */
+    public static void recolorMultiply(int[] src, int[] dst, int count, int tint) {
+        MultiplyLuts luts = LUTS.get();
+        int rgb = tint & 0xFFFFFF;
+        if (luts.tint() != rgb) {
+            luts = new MultiplyLuts(rgb, multiplyLut((rgb >>> 16) & 0xFF, 16),
+                    multiplyLut((rgb >>> 8) & 0xFF, 8), multiplyLut(rgb & 0xFF, 0));
+            LUTS.set(luts);
         }
+        int[] rLut = luts.r();
+        int[] gLut = luts.g();
+        int[] bLut = luts.b();
 
-        return result;
+        for (int i = 0; i < count; i++) {
+            int argb = src[i];
+            dst[i] = (argb & 0xFF000000) | rLut[(argb >>> 16) & 0xFF] | gLut[(argb >>> 8) & 0xFF]
+                    | bLut[argb & 0xFF];
+        }
+    }
+
+    private record MultiplyLuts(int tint, int[] r, int[] g, int[] b) {
+    }
+
+    private static int[] multiplyLut(int t, int shift) {
+        int[] lut = new int[256];
+        for (int c = 0; c < 256; c++)
+            lut[c] = ((c * t) / 255) << shift;
+        return lut;
+    }
+
+    /**
+     * Returns the image's pixels as packed non-premultiplied ARGB, row-major with no padding. For
+     * plain {@code TYPE_INT_ARGB} images this is the backing array itself; otherwise it is a
+     * per-thread scratch buffer that stays valid until the next call on the same thread.
+     */
+    public static int[] readArgb(BufferedImage image) {
+        int[] direct = directArgb(image);
+        if (direct != null)
+            return direct;
+
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] scratch = SCRATCH.get();
+        if (scratch.length < width * height) {
+            scratch = new int[width * height];
+            SCRATCH.set(scratch);
+        }
+        return image.getRGB(0, 0, width, height, scratch, 0, width);
+    }
+
+    /**
+     * Backing array of an image created as {@code new BufferedImage(w, h, TYPE_INT_ARGB)}.
+     */
+    public static int[] argbData(BufferedImage image) {
+        int[] direct = directArgb(image);
+        if (direct == null)
+            throw new IllegalArgumentException("Not a plain TYPE_INT_ARGB image: " + image);
+        return direct;
+    }
+
+    private static int[] directArgb(BufferedImage image) {
+        if (image.getType() != BufferedImage.TYPE_INT_ARGB)
+            return null;
+        WritableRaster raster = image.getRaster();
+        // Sub-images share a larger buffer with an offset/stride; only the simple case is direct.
+        if (raster.getSampleModelTranslateX() != 0 || raster.getSampleModelTranslateY() != 0
+                || !(raster.getSampleModel() instanceof SinglePixelPackedSampleModel sm)
+                || sm.getScanlineStride() != image.getWidth()
+                || !(raster.getDataBuffer() instanceof DataBufferInt db) || db.getNumBanks() != 1
+                || db.getOffset() != 0)
+            return null;
+        return db.getData();
     }
 }
@@ -0,0 +1,13 @@
+package dk.mosberg.generator;
+
+/**
+ * One schema violation. {@code pointer} is a JSON pointer into the validated instance ("" for the
+ * root, e.g. "/recipe/result/count").
+ */
+public record ValidationError(String pointer, String message) {
+
+    @Override
+    public String toString() {
+        return (pointer.isEmpty() ? "/" : pointer) + ": " + message;
+    }
+}
@@ -0,0 +1,114 @@
+package dk.mosberg.generator;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the input trees (materials/, textures/, schemas/, palettes/, ramps/) and calls back once
+ * per burst of file events, plus {@code asset-rules.json} in the input root. Editors and image
+ * tools usually emit several events per save, so events are collected until the trees have been
+ * quiet for {@link #DEBOUNCE_MS}.
+ */
+public final class WatchMode {
+
+    private static final long DEBOUNCE_MS = 300;
+    private static final List<String> WATCHED =
+            List.of("materials", "textures", "schemas", "palettes", "ramps");
+
+    @FunctionalInterface
+    public interface ChangeHandler {
+        void onChange(boolean schemasChanged);
+    }
+
+    private final GeneratorConfig config;
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+
+    public WatchMode(GeneratorConfig config) {
+        this.config = config;
+    }
+
+    /**
+     * Blocks until the thread is interrupted.
+     */
+    public void watch(ChangeHandler handler) throws IOException {
+        Path inputRoot = config.inputDir().toAbsolutePath().normalize();
+        Path schemaDir = inputRoot.resolve("schemas");
+
+        try (WatchService ws = FileSystems.getDefault().newWatchService()) {
+            for (String dir : WATCHED) {
+                Path root = inputRoot.resolve(dir);
+                if (Files.isDirectory(root))
+                    registerTree(ws, root);
+                else
+                    Log.warn("Not watching missing dir: " + root);
+            }
+            // The root itself only for the rules file (and watched dirs created later); other
+            // files there, such as an output dir inside the input dir, are ignored.
+            register(ws, inputRoot);
+            Log.info("Watching " + config.inputDir().toAbsolutePath() + " for changes...");
+
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = ws.take();
+                boolean schemasChanged = false;
+                int events = 0;
+
+                // Drain the burst: keep polling until nothing arrives within the debounce window.
+                while (key != null) {
+                    Path dir = keys.get(key);
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.kind() == StandardWatchEventKinds.OVERFLOW || dir == null) {
+                            events++;
+                            continue;
+                        }
+                        Path changed = dir.resolve((Path) event.context());
+                        if (dir.equals(inputRoot)) {
+                            String name = changed.getFileName().toString();
+                            if (!name.equals(AssetRules.FILE_NAME) && !WATCHED.contains(name))
+                                continue;
+                        }
+                        events++;
+                        if (changed.startsWith(schemaDir))
+                            schemasChanged = true;
+                        if (event.kind() == StandardWatchEventKinds.ENTRY_CREATE
+                                && Files.isDirectory(changed))
+                            registerTree(ws, changed);
+                    }
+                    if (!key.reset())
+                        keys.remove(key);
+                    key = ws.poll(DEBOUNCE_MS, TimeUnit.MILLISECONDS);
+                }
+
+                if (events == 0)
+                    continue;
+                Log.info("Detected " + events + " change(s); regenerating.");
+                handler.onChange(schemasChanged);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void registerTree(WatchService ws, Path root) throws IOException {
+        try (var stream = Files.walk(root)) {
+            for (Path dir : (Iterable<Path>) stream.filter(Files::isDirectory)::iterator)
+                register(ws, dir);
+        }
+    }
+
+    private void register(WatchService ws, Path dir) throws IOException {
+        WatchKey key = dir.register(ws, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        keys.put(key, dir);
+    }
+}
@@ -0,0 +1,131 @@
+package dk.mosberg.generator;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs file operations on a few I/O threads so generation never waits on the disk. Every
+ * operation has a key; operations with the same key always go to the same worker and run in
+ * submission order, so a write and a later delete of the same file can't be reordered. The key is
+ * the file path, or its directory when grouping by directory (fewer workers touching one
+ * directory, at the cost of spreading less evenly).
+ * <p>
+ * Each worker has a bounded queue, so a producer that outruns the disk blocks instead of piling
+ * up file contents in memory. The first failure is kept; later submissions and {@link #await()}
+ * report it. With zero threads everything runs on the calling thread.
+ */
+public final class WriteQueue implements AutoCloseable {
+
+    @FunctionalInterface
+    public interface Op {
+        void run() throws Exception;
+    }
+
+    private static final int QUEUE_CAPACITY = 256;
+    private static final Op STOP = () -> {};
+
+    private final boolean groupByDir;
+    private final BlockingQueue<Op>[] queues;
+    private final AtomicReference<Throwable> failure = new AtomicReference<>();
+    private final Object idle = new Object();
+    private int pending;
+
+    @SuppressWarnings("unchecked")
+    public WriteQueue(int threads, boolean groupByDir) {
+        this.groupByDir = groupByDir;
+        this.queues = new BlockingQueue[threads];
+        for (int i = 0; i < threads; i++) {
+            BlockingQueue<Op> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+            queues[i] = queue;
+            Thread.ofPlatform().name("generator-io-" + i).daemon().start(() -> drain(queue));
+        }
+    }
+
+    public static WriteQueue synchronous() {
+        return new WriteQueue(0, false);
+    }
+
+    public void submit(Path file, Op op) throws Exception {
+        rethrowFailure();
+        if (queues.length == 0) {
+            op.run();
+            return;
+        }
+
+        Path key = groupByDir && file.getParent() != null ? file.getParent() : file;
+        synchronized (idle) {
+            pending++;
+        }
+        try {
+            queues[Math.floorMod(key.hashCode(), queues.length)].put(op);
+        } catch (InterruptedException e) {
+            done();
+            Thread.currentThread().interrupt();
+            throw e;
+        }
+    }
+
+    /**
+     * Blocks until everything submitted so far has run, then rethrows the first failure, if any.
+     */
+    public void await() throws Exception {
+        synchronized (idle) {
+            while (pending > 0)
+                idle.wait();
+        }
+        rethrowFailure();
+    }
+
+    @Override
+    public void close() {
+        for (BlockingQueue<Op> queue : queues) {
+            try {
+                queue.put(STOP);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void drain(BlockingQueue<Op> queue) {
+        while (true) {
+            Op op;
+            try {
+                op = queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (op == STOP)
+                return;
+
+            try {
+                // After a failure the run is lost anyway; just drain what is left.
+                if (failure.get() == null)
+                    op.run();
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            } finally {
+                done();
+            }
+        }
+    }
+
+    private void done() {
+        synchronized (idle) {
+            if (--pending == 0)
+                idle.notifyAll();
+        }
+    }
+
+    private void rethrowFailure() throws Exception {
+        Throwable t = failure.get();
+        if (t == null)
+            return;
+        // Wrapped so the trace shows both the failing write and the caller that noticed it.
+        throw new IOException("File write failed: " + t.getMessage(), t);
+    }
+}
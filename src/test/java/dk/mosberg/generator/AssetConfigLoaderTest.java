@@ -0,0 +1,114 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class AssetConfigLoaderTest {
+
+    @TempDir
+    Path input;
+
+    private Path materials;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Metrics.startJob();
+        materials = TestInputs.create(input);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.endJob();
+    }
+
+    private void write(String file, String json) throws Exception {
+        Path f = materials.resolve(file);
+        Files.createDirectories(f.getParent());
+        Files.writeString(f, json);
+    }
+
+    private List<String> load(boolean strict, int threads) throws Exception {
+        List<String> ids = new ArrayList<>();
+        new AssetConfigLoader(input, new SchemaValidator(input.resolve("schemas"), strict),
+                threads).load((mat, source) -> ids.add(mat.id() + "@" + source));
+        return ids;
+    }
+
+    private static JsonArray skipped() throws Exception {
+        return Metrics.report(GeneratorConfig.fromArgs(new String[] {"--modid", "mod"}))
+                .getAsJsonArray("skipped");
+    }
+
+    @Test
+    void parallelLoadKeepsSequentialOrder() throws Exception {
+        for (int i = 0; i < 300; i++) {
+            // Uneven sizes so validation threads finish out of order.
+            String padding = "x".repeat(i % 7 == 0 ? 20_000 : 1);
+            write(String.format("%s/m_%03d.json", i % 2 == 0 ? "a" : "b", (i * 37) % 300),
+                    "{ \"schema\": \"material\", \"id\": \"m_" + i + "\", \"name\": \"m\","
+                            + " \"category\": \"woodplank\", \"palette\": \"none\","
+                            + " \"properties\": { \"pad\": \"" + padding + "\" } }");
+        }
+
+        List<String> sequential = load(true, 1);
+        assertEquals(300, sequential.size());
+        assertTrue(sequential.get(0).endsWith("@materials/a/m_000.json"), sequential.get(0));
+        for (int threads : new int[] {2, 4, 8})
+            assertEquals(sequential, load(true, threads));
+    }
+
+    @Test
+    void strictModeStopsAtTheFirstInvalidFile() throws Exception {
+        for (int i = 0; i < 100; i++)
+            write(String.format("m_%03d.json", i), TestInputs.material("m_" + i, "woodplank"));
+        write("m_040.json", "{ \"schema\": \"material\", \"id\": \"m_40\" }");
+        write("m_070.json", "{ broken");
+
+        List<String> ids = new ArrayList<>();
+        AssetConfigLoader loader = new AssetConfigLoader(input,
+                new SchemaValidator(input.resolve("schemas"), true), 4);
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> loader.load((mat, source) -> ids.add(mat.id())));
+
+        assertTrue(e.getMessage().contains("m_040.json"), e.getMessage());
+        assertEquals(40, ids.size());
+        assertEquals("m_39", ids.get(39));
+    }
+
+    @Test
+    void nonStrictModeSkipsAndReportsInvalidFiles() throws Exception {
+        for (int i = 0; i < 10; i++)
+            write("m_" + i + ".json", TestInputs.material("m_" + i, "woodplank"));
+        write("m_3.json", "{ \"schema\": \"material\", \"id\": \"m_3\" }");
+        write("m_7.json", "{ broken");
+
+        List<String> ids = load(false, 4);
+        assertEquals(8, ids.size());
+        assertTrue(ids.stream().noneMatch(id -> id.startsWith("m_3@") || id.startsWith("m_7@")));
+
+        JsonArray skipped = skipped();
+        assertEquals(2, skipped.size());
+        List<String> sources = new ArrayList<>();
+        for (JsonElement s : skipped)
+            sources.add(s.getAsJsonObject().get("source").getAsString());
+        assertTrue(sources.get(0).endsWith("m_3.json"), sources.toString());
+        assertTrue(sources.get(1).endsWith("m_7.json"), sources.toString());
+        assertTrue(skipped.get(0).getAsJsonObject().getAsJsonArray("errors").size() > 0);
+        assertTrue(skipped.get(1).getAsJsonObject().get("message").getAsString()
+                .contains("unreadable"));
+    }
+}
@@ -0,0 +1,147 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import com.google.gson.JsonObject;
+
+import java.awt.image.BufferedImage;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BaseTextureCacheTest {
+
+    private static final int VARIANTS = 16;
+    private static final ColorRamp BASE = new ColorRamp("base",
+            new int[] {0x202020, 0x606060, 0xA0A0A0, 0xE0E0E0}, "h1");
+
+    @TempDir
+    Path dir;
+
+    private Path file;
+    private Metrics metrics;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        metrics = Metrics.startJob();
+        file = dir.resolve("base.png");
+        BufferedImage image = new BufferedImage(8, 8, BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < 8; y++) {
+            for (int x = 0; x < 8; x++) {
+                int grey = x * 32 + y * 3;
+                int alpha = x == 0 && y == 0 ? 0 : 0x40 + y * 0x18;
+                image.setRGB(x, y, alpha << 24 | grey << 16 | grey << 8 | grey);
+            }
+        }
+        ImageIO.write(image, "png", file.toFile());
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.endJob();
+    }
+
+    private TextureIndex.Texture texture() throws Exception {
+        return new TextureIndex.Texture("base.png", file,
+                Files.readAttributes(file, BasicFileAttributes.class));
+    }
+
+    private long decodes() {
+        GeneratorConfig config = GeneratorConfig.fromArgs(new String[] {"--modid", "mod",
+                "--input", dir.toString(), "--output", dir.toString()});
+        JsonObject phase = metrics.toJson(config).getAsJsonObject("phases")
+                .getAsJsonObject("texture_decode");
+        return phase == null ? 0 : phase.get("count").getAsLong();
+    }
+
+    private static ColorRamp target(int variant) {
+        int[] colors = new int[2 + variant % 4];
+        for (int i = 0; i < colors.length; i++)
+            colors[i] = (variant * 0x0F0000 + i * 0x002A11) & 0xFFFFFF;
+        return new ColorRamp("target_" + variant, colors, "t" + variant);
+    }
+
+    /** Per-pixel nearest-base-color lookup, without the cache or the index. */
+    private static int[] directRecolor(BufferedImage source, ColorRamp target) {
+        int last = BASE.size() - 1;
+        int[] out = new int[source.getWidth() * source.getHeight()];
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                int argb = source.getRGB(x, y);
+                int alpha = argb >>> 24;
+                int t = Math.round(BASE.nearest(argb & 0xFFFFFF) * (target.size() - 1)
+                        / (float) last);
+                out[y * source.getWidth() + x] =
+                        alpha == 0 ? 0 : alpha << 24 | target.colors()[t] & 0xFFFFFF;
+            }
+        }
+        return out;
+    }
+
+    @Test
+    void variantsOfOneBaseShareASingleDecode() throws Exception {
+        BaseTextureCache cache = new BaseTextureCache();
+        TextureIndex.Texture texture = texture();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(VARIANTS);
+        List<Future<RampIndexedTexture>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < VARIANTS; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return cache.get(texture, BASE);
+                }));
+            }
+            start.countDown();
+
+            BufferedImage source = ImageIO.read(file.toFile());
+            RampIndexedTexture first = results.get(0).get();
+            for (int i = 0; i < VARIANTS; i++) {
+                RampIndexedTexture indexed = results.get(i).get();
+                assertSame(first, indexed);
+                BufferedImage recolored = indexed.recolor(target(i));
+                assertArrayEquals(directRecolor(source, target(i)),
+                        recolored.getRGB(0, 0, 8, 8, null, 0, 8), "variant " + i);
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, decodes());
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    void changedRampOrFileReplacesTheEntry() throws Exception {
+        BaseTextureCache cache = new BaseTextureCache();
+        RampIndexedTexture first = cache.get(texture(), BASE);
+        assertSame(first, cache.get(texture(), BASE));
+
+        ColorRamp edited = new ColorRamp(BASE.id(), BASE.colors(), "h2");
+        RampIndexedTexture second = cache.get(texture(), edited);
+        assertNotSame(first, second);
+        assertEquals(2, decodes());
+        assertEquals(1, cache.size());
+
+        Files.setLastModifiedTime(file, FileTime.fromMillis(
+                Files.getLastModifiedTime(file).toMillis() + 10_000));
+        assertNotSame(second, cache.get(texture(), edited));
+        assertEquals(3, decodes());
+        assertEquals(1, cache.size());
+    }
+}
@@ -0,0 +1,69 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class BatchManifestTest {
+
+    private static BatchManifest.Job job(String modId, String input, String output) {
+        return new BatchManifest.Job(modId, Path.of(input), Path.of(output), "en_us");
+    }
+
+    private static List<List<String>> groups(BatchManifest.Job... jobs) {
+        return new BatchManifest(List.of(jobs)).independentGroups().stream()
+                .map(group -> group.stream().map(BatchManifest.Job::modId).toList())
+                .toList();
+    }
+
+    @Test
+    void unrelatedJobsAreIndependent() {
+        assertEquals(List.of(List.of("a"), List.of("b")),
+                groups(job("a", "/in/a", "/out/a"), job("b", "/in/b", "/out/b")));
+    }
+
+    @Test
+    void sharedInputDoesNotSerialize() {
+        assertEquals(List.of(List.of("a"), List.of("b")),
+                groups(job("a", "/in", "/out/a"), job("b", "/in", "/out/b")));
+    }
+
+    @Test
+    void sameOrNestedOutputsShareAGroup() {
+        assertEquals(List.of(List.of("a", "b")),
+                groups(job("a", "/in/a", "/out"), job("b", "/in/b", "/out")));
+        assertEquals(List.of(List.of("a", "b")),
+                groups(job("a", "/in/a", "/out"), job("b", "/in/b", "/out/b")));
+        assertEquals(List.of(List.of("a", "b")),
+                groups(job("a", "/in/a", "/out/a"), job("b", "/in/b", "/out")));
+    }
+
+    @Test
+    void outputOverlappingAnotherInputSharesAGroup() {
+        // Equal, inside and containing, in either direction.
+        assertEquals(List.of(List.of("a", "b")),
+                groups(job("a", "/in/a", "/shared"), job("b", "/shared", "/out/b")));
+        assertEquals(List.of(List.of("a", "b")),
+                groups(job("a", "/in/a", "/shared/gen"), job("b", "/shared", "/out/b")));
+        assertEquals(List.of(List.of("a", "b")),
+                groups(job("a", "/in/a", "/shared"), job("b", "/shared/src", "/out/b")));
+        assertEquals(List.of(List.of("a", "b")),
+                groups(job("a", "/shared", "/out/a"), job("b", "/in/b", "/shared")));
+    }
+
+    @Test
+    void siblingDirsWithCommonPrefixAreIndependent() {
+        assertEquals(List.of(List.of("a"), List.of("b")),
+                groups(job("a", "/in/a", "/out"), job("b", "/out2", "/out3")));
+    }
+
+    @Test
+    void groupsAreTransitiveAndKeepFileOrder() {
+        assertEquals(List.of(List.of("a", "c", "d"), List.of("b")),
+                groups(job("a", "/in/a", "/x"), job("b", "/in/b", "/y"),
+                        job("c", "/x", "/z"), job("d", "/z/src", "/w")));
+    }
+}
@@ -0,0 +1,100 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class FileUtilsTest {
+
+    private static final byte[] ORIGINAL = "texture-a".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SAME_SIZE = "texture-b".getBytes(StandardCharsets.UTF_8);
+
+    @TempDir
+    Path dir;
+
+    private Path input;
+    private Path output;
+    private final FileUtils.DirCache dirs = new FileUtils.DirCache();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        input = dir.resolve("in/texture.png");
+        output = dir.resolve("out/assets/texture.png");
+        Files.createDirectories(input.getParent());
+        Files.write(input, ORIGINAL);
+        Files.setLastModifiedTime(input, FileTime.fromMillis(1_000_000));
+    }
+
+    private static BasicFileAttributes attrs(Path file) throws Exception {
+        return Files.readAttributes(file, BasicFileAttributes.class);
+    }
+
+    private boolean copy() throws Exception {
+        return FileUtils.copyIfChanged(input, attrs(input), output, dirs);
+    }
+
+    private boolean link() throws Exception {
+        return FileUtils.linkIfChanged(input, attrs(input), output, dirs);
+    }
+
+    @Test
+    void identicalCopyIsSkipped() throws Exception {
+        assertTrue(copy());
+        assertEquals(Files.getLastModifiedTime(input), Files.getLastModifiedTime(output));
+        assertFalse(copy());
+
+        // Same content under a new mtime is found equal by comparing the bytes.
+        Files.setLastModifiedTime(input, FileTime.fromMillis(2_000_000));
+        assertFalse(copy());
+        assertArrayEquals(ORIGINAL, Files.readAllBytes(output));
+    }
+
+    @Test
+    void sameSizeEditWithNewMtimeIsCopied() throws Exception {
+        assertTrue(copy());
+
+        Files.write(input, SAME_SIZE);
+        Files.setLastModifiedTime(input, FileTime.fromMillis(2_000_000));
+        assertTrue(copy());
+        assertArrayEquals(SAME_SIZE, Files.readAllBytes(output));
+        assertEquals(FileTime.fromMillis(2_000_000), Files.getLastModifiedTime(output));
+    }
+
+    @Test
+    void existingLinkIsKept() throws Exception {
+        assertTrue(link());
+        assertTrue(Files.isSameFile(input, output));
+        assertFalse(link());
+    }
+
+    @Test
+    void writingOverALinkedOutputLeavesTheInputAlone() throws Exception {
+        assertTrue(link());
+
+        assertTrue(FileUtils.writeBytesIfChanged(output, SAME_SIZE, dirs));
+        assertArrayEquals(SAME_SIZE, Files.readAllBytes(output));
+        assertArrayEquals(ORIGINAL, Files.readAllBytes(input));
+        assertFalse(Files.isSameFile(input, output));
+    }
+
+    @Test
+    void copyingOverALinkedOutputLeavesTheInputAlone() throws Exception {
+        assertTrue(link());
+
+        assertTrue(copy());
+        assertFalse(Files.isSameFile(input, output));
+        Files.write(input, SAME_SIZE);
+        assertArrayEquals(ORIGINAL, Files.readAllBytes(output));
+    }
+}
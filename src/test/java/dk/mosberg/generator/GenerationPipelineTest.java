@@ -0,0 +1,76 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class GenerationPipelineTest {
+
+    @TempDir
+    Path input;
+
+    @TempDir
+    Path output;
+
+    @BeforeEach
+    void setUp() {
+        Metrics.startJob();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.endJob();
+    }
+
+    private static String material(String id, String name, String category) {
+        return "{ \"schema\": \"material\", \"id\": \"" + id + "\", \"name\": \"" + name
+                + "\", \"category\": \"" + category + "\", \"palette\": \"none\" }";
+    }
+
+    private String lang(String run, String... options) throws Exception {
+        Path out = output.resolve(run);
+        assertEquals(0, TestInputs.generate(input, out, options));
+        return Files.readString(out.resolve("assets/mod/lang/en_us.json"));
+    }
+
+    @Test
+    void duplicateIdsKeepLangInInputOrder() throws Exception {
+        TestInputs.create(input);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            // Every fifth material redefines an earlier one (as a block or an item), so the
+            // later definition has to wait for the earlier one to be merged.
+            if (i % 5 == 4)
+                lines.add(material("m_" + (i - 3), "again " + i, i % 2 == 0 ? "glass" : "tools"));
+            else
+                lines.add(material("m_" + i, "first " + i, "woodplank"));
+        }
+        Files.writeString(input.resolve("materials/all.jsonl"), String.join("\n", lines));
+
+        String sequential = lang("sequential", "--threads", "1");
+        for (int threads : new int[] {2, 4, 8})
+            assertEquals(sequential, lang("threads" + threads, "--threads",
+                    Integer.toString(threads)));
+
+        JsonObject json = JsonParser.parseString(sequential).getAsJsonObject();
+        List<String> keys = List.copyOf(json.keySet());
+        // The last definition wins. A key it keeps stays where the id first put it; a key it
+        // changes is dropped and the new one added when the redefinition is merged.
+        assertEquals(List.of("block.mod.m_0", "block.mod.m_1", "block.mod.m_2", "block.mod.m_3",
+                "block.mod.m_5", "block.mod.m_7", "block.mod.m_8", "item.mod.m_6"),
+                keys.subList(0, 8));
+        assertEquals("again 4", json.get("block.mod.m_1").getAsString());
+        assertEquals("again 9", json.get("item.mod.m_6").getAsString());
+    }
+}
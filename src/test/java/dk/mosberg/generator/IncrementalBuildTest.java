@@ -0,0 +1,199 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IncrementalBuildTest {
+
+    private static final Path OAK_TEXTURE = Path.of("textures/material/woodplank/oak_planks.png");
+
+    @TempDir
+    Path input;
+
+    @TempDir
+    Path output;
+
+    private Metrics metrics;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        metrics = Metrics.startJob();
+        TestInputs.create(input);
+        TestInputs.writeMaterial(input, "oak_planks", "woodplank");
+        TestInputs.writeMaterial(input, "birch_planks", "woodplank");
+        TestInputs.writeMaterial(input, "iron_ingot", "metalingot");
+        generate();
+        assertEquals(3, counter(Metrics.Counter.MATERIALS_GENERATED));
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.endJob();
+    }
+
+    private void generate(String... options) {
+        assertEquals(0, TestInputs.generate(input, output, options));
+    }
+
+    private long counter(Metrics.Counter counter) {
+        return metrics.counter(counter);
+    }
+
+    private boolean exists(String rel) {
+        return Files.exists(output.resolve(rel));
+    }
+
+    private JsonObject lang() throws Exception {
+        Path file = output.resolve("assets/mod/lang/en_us.json");
+        return JsonParser.parseString(Files.readString(file)).getAsJsonObject();
+    }
+
+    private Path manifestFile() {
+        return output.resolve(BuildManifest.FILE_NAME);
+    }
+
+    @Test
+    void unchangedInputWritesNothing() throws Exception {
+        String manifest = Files.readString(manifestFile());
+        generate();
+
+        assertEquals(0, counter(Metrics.Counter.MATERIALS_GENERATED));
+        assertEquals(3, counter(Metrics.Counter.MATERIALS_UP_TO_DATE));
+        assertEquals(0, counter(Metrics.Counter.FILES_WRITTEN));
+        assertEquals(0, counter(Metrics.Counter.FILES_DELETED));
+        assertEquals(manifest, Files.readString(manifestFile()));
+    }
+
+    @Test
+    void changedTextureRegeneratesOnlyItsMaterial() throws Exception {
+        Path texture = input.resolve(OAK_TEXTURE);
+        Files.copy(input.resolve("textures/material/metalingot/iron_ingot.png"), texture,
+                StandardCopyOption.REPLACE_EXISTING);
+        generate();
+
+        assertEquals(1, counter(Metrics.Counter.MATERIALS_GENERATED));
+        assertEquals(2, counter(Metrics.Counter.MATERIALS_UP_TO_DATE));
+        assertEquals(-1, Files.mismatch(texture,
+                output.resolve("assets/mod/textures/block/oak_planks.png")));
+    }
+
+    @Test
+    void sameSizeEditWithNewMtimeRegenerates() throws Exception {
+        Path texture = input.resolve(OAK_TEXTURE);
+        byte[] bytes = Files.readAllBytes(texture);
+        FileTime mtime = Files.getLastModifiedTime(texture);
+        bytes[bytes.length / 2] ^= 1;
+        Files.write(texture, bytes);
+        Files.setLastModifiedTime(texture, FileTime.fromMillis(mtime.toMillis() + 2000));
+        generate();
+
+        assertEquals(1, counter(Metrics.Counter.MATERIALS_GENERATED));
+        assertEquals(-1, Files.mismatch(texture,
+                output.resolve("assets/mod/textures/block/oak_planks.png")));
+    }
+
+    @Test
+    void touchedTextureWithSameContentIsUpToDate() throws Exception {
+        Path texture = input.resolve(OAK_TEXTURE);
+        Files.setLastModifiedTime(texture,
+                FileTime.fromMillis(Files.getLastModifiedTime(texture).toMillis() + 2000));
+        generate();
+
+        // The digest is recomputed for the new mtime, and it matches.
+        assertEquals(0, counter(Metrics.Counter.MATERIALS_GENERATED));
+        assertTrue(Files.readString(manifestFile()).contains(
+                "\"modified\": " + Files.getLastModifiedTime(texture).toMillis()));
+    }
+
+    @Test
+    void changedFingerprintRegeneratesEverythingAndStillPrunes() throws Exception {
+        Files.delete(input.resolve("materials/iron_ingot.json"));
+        generate("--minify");
+
+        assertEquals(2, counter(Metrics.Counter.MATERIALS_GENERATED));
+        assertEquals(0, counter(Metrics.Counter.MATERIALS_UP_TO_DATE));
+        assertFalse(exists("assets/mod/models/item/iron_ingot.json"));
+        assertFalse(exists("assets/mod/textures/item/iron_ingot.png"));
+        assertFalse(lang().has("item.mod.iron_ingot"));
+        assertTrue(Files.readString(output.resolve("assets/mod/models/block/oak_planks.json"))
+                .startsWith("{\"parent\":"));
+    }
+
+    @Test
+    void removedMaterialLosesOutputsAndLangKeys() throws Exception {
+        Files.delete(input.resolve("materials/birch_planks.json"));
+        generate();
+
+        assertEquals(0, counter(Metrics.Counter.MATERIALS_GENERATED));
+        assertEquals(4, counter(Metrics.Counter.FILES_DELETED));
+        for (String rel : List.of("assets/mod/blockstates/birch_planks.json",
+                "assets/mod/models/block/birch_planks.json",
+                "assets/mod/models/item/birch_planks.json",
+                "assets/mod/textures/block/birch_planks.png"))
+            assertFalse(exists(rel), rel);
+        assertEquals(List.of("item.mod.iron_ingot", "block.mod.oak_planks"),
+                List.copyOf(lang().keySet()));
+        assertFalse(Files.readString(manifestFile()).contains("birch_planks\""));
+    }
+
+    @Test
+    void materialChangingCategoryDropsWhatItNoLongerWrites() throws Exception {
+        TestInputs.writeMaterial(input, "oak_planks", "metalingot");
+        Files.createDirectories(input.resolve("textures/material/metalingot"));
+        Files.copy(input.resolve(OAK_TEXTURE),
+                input.resolve("textures/material/metalingot/oak_planks.png"));
+        generate();
+
+        assertEquals(1, counter(Metrics.Counter.MATERIALS_GENERATED));
+        assertFalse(exists("assets/mod/blockstates/oak_planks.json"));
+        assertFalse(exists("assets/mod/models/block/oak_planks.json"));
+        assertFalse(exists("assets/mod/textures/block/oak_planks.png"));
+        assertTrue(exists("assets/mod/textures/item/oak_planks.png"));
+        assertFalse(lang().has("block.mod.oak_planks"));
+        assertTrue(lang().has("item.mod.oak_planks"));
+    }
+
+    @Test
+    void deletedOutputIsRegenerated() throws Exception {
+        Files.delete(output.resolve("assets/mod/models/item/birch_planks.json"));
+        generate();
+
+        assertEquals(1, counter(Metrics.Counter.MATERIALS_GENERATED));
+        assertTrue(exists("assets/mod/models/item/birch_planks.json"));
+    }
+
+    @Test
+    void corruptManifestFallsBackToFullRebuild() throws Exception {
+        Files.writeString(manifestFile(), "{ not json");
+        generate();
+
+        assertEquals(3, counter(Metrics.Counter.MATERIALS_GENERATED));
+        assertEquals(0, counter(Metrics.Counter.FILES_WRITTEN));
+        assertTrue(Files.readString(manifestFile()).contains("\"format\": 2"));
+    }
+
+    @Test
+    void formatOneManifestFallsBackToFullRebuild() throws Exception {
+        Files.writeString(manifestFile(), Files.readString(manifestFile())
+                .replace("\"format\": 2", "\"format\": 1"));
+        generate();
+
+        assertEquals(3, counter(Metrics.Counter.MATERIALS_GENERATED));
+        assertEquals(0, counter(Metrics.Counter.MATERIALS_UP_TO_DATE));
+    }
+}
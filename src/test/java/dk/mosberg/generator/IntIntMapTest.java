@@ -0,0 +1,77 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+class IntIntMapTest {
+
+    @Test
+    void returnsMissingValueForAbsentKeys() {
+        IntIntMap map = new IntIntMap();
+        assertEquals(-1, map.get(42, -1));
+        assertFalse(map.containsKey(42));
+        assertEquals(0, map.size());
+    }
+
+    @Test
+    void putOverwritesExistingValue() {
+        IntIntMap map = new IntIntMap();
+        map.put(7, 1);
+        map.put(7, 2);
+        assertEquals(2, map.get(7, -1));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    void zeroKeyIsStoredOutsideTheTable() {
+        IntIntMap map = new IntIntMap();
+        assertFalse(map.containsKey(0));
+        assertEquals(-1, map.get(0, -1));
+
+        map.put(0, 0x123456);
+        map.put(1, 5);
+        assertTrue(map.containsKey(0));
+        assertEquals(0x123456, map.get(0, -1));
+        assertEquals(5, map.get(1, -1));
+        assertEquals(2, map.size());
+    }
+
+    @Test
+    void growsAndKeepsEveryEntry() {
+        IntIntMap map = new IntIntMap(2);
+        Map<Integer, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+        for (int i = 0; i < 10_000; i++) {
+            int key = random.nextInt();
+            int value = random.nextInt();
+            map.put(key, value);
+            expected.put(key, value);
+        }
+
+        assertEquals(expected.size(), map.size());
+        expected.forEach((k, v) -> assertEquals(v, map.get(k, ~v)));
+        for (int i = 0; i < 1_000; i++) {
+            int key = random.nextInt();
+            if (!expected.containsKey(key))
+                assertFalse(map.containsKey(key));
+        }
+    }
+
+    @Test
+    void colliding24BitColorsAreKeptApart() {
+        // Neighboring colors differ only in low bits, the case the hash has to spread.
+        IntIntMap map = new IntIntMap(16);
+        for (int rgb = 0x101010; rgb < 0x101010 + 256; rgb++)
+            map.put(rgb, rgb ^ 0xFFFFFF);
+        for (int rgb = 0x101010; rgb < 0x101010 + 256; rgb++)
+            assertEquals(rgb ^ 0xFFFFFF, map.get(rgb, -1));
+        assertEquals(256, map.size());
+    }
+}
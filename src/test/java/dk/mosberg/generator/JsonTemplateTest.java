@@ -0,0 +1,64 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+class JsonTemplateTest {
+
+    private static final List<String> VALUES = List.of(
+            "oak_planks",
+            "quote\" and backslash\\",
+            "tab\t newline\n return\r backspace\b formfeed\f",
+            "nul\u0000 unit separator\u001f delete\u007f",
+            "html <b> & a='b'",
+            "line\u2028paragraph\u2029separators",
+            "æøå ü 日本",
+            "emoji 😀 and a lone surrogate \uD800",
+            "");
+
+    private static JsonObject model(String value) {
+        JsonObject textures = new JsonObject();
+        textures.addProperty("all", "mod:block/" + value);
+        JsonArray tags = new JsonArray();
+        tags.add(value);
+        tags.add("fixed");
+        JsonObject root = new JsonObject();
+        root.addProperty("parent", "minecraft:block/cube_all");
+        root.add("textures", textures);
+        root.add("tags", tags);
+        return root;
+    }
+
+    private static void assertRendersLikeGson(Gson gson) {
+        JsonTemplate template = JsonTemplate.compile(model(JsonTemplate.SLOT), gson);
+        for (String value : VALUES) {
+            byte[] expected = (gson.toJson(model(value)) + "\n").getBytes(StandardCharsets.UTF_8);
+            assertArrayEquals(expected, template.render(value), value);
+        }
+    }
+
+    @Test
+    void prettyOutputMatchesGson() {
+        assertRendersLikeGson(FileUtils.PRETTY_GSON);
+    }
+
+    @Test
+    void compactOutputMatchesGson() {
+        assertRendersLikeGson(FileUtils.GSON);
+    }
+
+    @Test
+    void sampleWithoutSlotIsRejected() {
+        assertThrows(IllegalArgumentException.class,
+                () -> JsonTemplate.compile(model("plain"), FileUtils.GSON));
+    }
+}
@@ -0,0 +1,130 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LangAccumulatorTest {
+
+    private static final Path EN_US = AssetsPaths.lang("mod", "en_us");
+
+    @TempDir
+    Path output;
+
+    private Metrics metrics;
+
+    @BeforeEach
+    void isolateMetrics() {
+        metrics = Metrics.startJob();
+    }
+
+    @AfterEach
+    void endMetrics() {
+        Metrics.endJob();
+    }
+
+    private void existing(String json) throws Exception {
+        Path file = output.resolve(EN_US);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, json);
+    }
+
+    private static List<String> keys(JsonObject json) {
+        return List.copyOf(json.keySet());
+    }
+
+    @Test
+    void keepsExistingOrderAndAppendsNewKeys() throws Exception {
+        existing("""
+                { "b": "B", "a": "A", "c": "C" }
+                """);
+        LangAccumulator lang = new LangAccumulator(output);
+        lang.add("mod", "en_us", Map.of("a", "A2"));
+        lang.add("mod", "en_us", Map.of("z", "Z"));
+        lang.add("mod", "en_us", Map.of("d", "D"));
+
+        JsonObject json = lang.toJson().get(EN_US);
+        assertEquals(List.of("b", "a", "c", "z", "d"), keys(json));
+        assertEquals("A2", json.get("a").getAsString());
+    }
+
+    @Test
+    void removesKeys() throws Exception {
+        existing("""
+                { "a": "A", "b": "B", "c": "C" }
+                """);
+        LangAccumulator lang = new LangAccumulator(output);
+        lang.remove("mod", "en_us", List.of("b", "missing"));
+        lang.add("mod", "en_us", Map.of("d", "D"));
+        lang.remove("mod", "en_us", List.of("d"));
+
+        assertEquals(List.of("a", "c"), keys(lang.toJson().get(EN_US)));
+    }
+
+    @Test
+    void readsTheExistingFileOnlyOnce() throws Exception {
+        existing("""
+                { "a": "A" }
+                """);
+        LangAccumulator lang = new LangAccumulator(output);
+        lang.add("mod", "en_us", Map.of("b", "B"));
+        // Later changes on disk are not merged again; the run owns the file from here on.
+        existing("""
+                { "x": "X" }
+                """);
+        lang.add("mod", "en_us", Map.of("c", "C"));
+
+        assertEquals(List.of("a", "b", "c"), keys(lang.toJson().get(EN_US)));
+    }
+
+    @Test
+    void withoutOutputRootStartsEmpty() throws Exception {
+        existing("""
+                { "a": "A" }
+                """);
+        LangAccumulator lang = new LangAccumulator(null);
+        lang.add("mod", "en_us", Map.of("b", "B"));
+
+        assertEquals(List.of("b"), keys(lang.toJson().get(EN_US)));
+    }
+
+    @Test
+    void invalidExistingFileIsReplaced() throws Exception {
+        existing("not json");
+        LangAccumulator lang = new LangAccumulator(output);
+        lang.add("mod", "en_us", Map.of("b", "B"));
+
+        assertEquals(List.of("b"), keys(lang.toJson().get(EN_US)));
+    }
+
+    @Test
+    void writerWritesEachLangFileOncePerFlush() throws Exception {
+        existing("""
+                { "a": "A" }
+                """);
+        try (AssetWriter writer = new AssetWriter(output, false)) {
+            for (int i = 0; i < 100; i++)
+                writer.mergeLang("mod", "en_us", Map.of("k" + i, "V" + i));
+            writer.mergeLang("other", "en_us", Map.of("x", "X"));
+            writer.flush();
+        }
+
+        assertEquals(2, metrics.counter(Metrics.Counter.FILES_WRITTEN));
+        JsonObject json = JsonParser.parseString(Files.readString(output.resolve(EN_US)))
+                .getAsJsonObject();
+        assertEquals(101, json.size());
+        assertEquals("a", keys(json).get(0));
+        assertEquals("k99", keys(json).get(100));
+    }
+}
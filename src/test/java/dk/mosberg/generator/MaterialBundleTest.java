@@ -0,0 +1,153 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class MaterialBundleTest {
+
+    /** Enough padding per record for 200 records to go over the 1 MiB streaming threshold. */
+    private static final String PADDING = "x".repeat(6_000);
+
+    @TempDir
+    Path input;
+
+    private Path materials;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Metrics.startJob();
+        materials = TestInputs.create(input);
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.endJob();
+    }
+
+    private static String material(String id, boolean padded) {
+        if (!padded)
+            return TestInputs.material(id, "woodplank");
+        return "{ \"schema\": \"material\", \"id\": \"" + id + "\", \"name\": \"m\","
+                + " \"category\": \"woodplank\", \"palette\": \"none\","
+                + " \"properties\": { \"pad\": \"" + PADDING + "\" } }";
+    }
+
+    private static List<String> ids(String prefix, int count) {
+        return IntStream.range(0, count).mapToObj(i -> prefix + i).toList();
+    }
+
+    private Path write(String file, String content) throws Exception {
+        return Files.writeString(materials.resolve(file), content);
+    }
+
+    /** A JSON array of materials {@code prefix0..}; {@code bad} (if >= 0) is the index to break. */
+    private Path array(String file, String prefix, int count, boolean padded, int bad,
+            String badElement) throws Exception {
+        return write(file, IntStream.range(0, count)
+                .mapToObj(i -> i == bad ? badElement : material(prefix + i, padded))
+                .collect(Collectors.joining(",\n", "[\n", "\n]\n")));
+    }
+
+    private List<String> load(boolean strict) throws Exception {
+        List<String> ids = new ArrayList<>();
+        new AssetConfigLoader(input, new SchemaValidator(input.resolve("schemas"), strict), 4)
+                .load((mat, source) -> ids.add(mat.id()));
+        return ids;
+    }
+
+    private static List<String> skippedSources() throws Exception {
+        JsonArray skipped = Metrics.report(GeneratorConfig.fromArgs(new String[] {"--modid", "m"}))
+                .getAsJsonArray("skipped");
+        List<String> out = new ArrayList<>();
+        for (JsonElement s : skipped)
+            out.add(s.getAsJsonObject().get("source").getAsString());
+        return out;
+    }
+
+    @Test
+    void readsJsonLinesAndArraysInFileOrder() throws Exception {
+        write("a.jsonl", material("a0", false) + "\n\n" + material("a1", false) + "\n");
+        write("b.ndjson", material("b0", false) + "\r\n" + material("b1", false));
+        array("c.json", "c", 3, false, -1, null);
+        Path large = array("d.json", "d", 200, true, -1, null);
+        write("e.json", material("e0", false));
+
+        assertTrue(Files.size(large) > 1 << 20);
+        List<String> expected = new ArrayList<>(List.of("a0", "a1", "b0", "b1"));
+        expected.addAll(ids("c", 3));
+        expected.addAll(ids("d", 200));
+        expected.add("e0");
+        assertEquals(expected, load(true));
+    }
+
+    @Test
+    void malformedLineIsNamedByLineNumber() throws Exception {
+        write("a.jsonl", material("a0", false) + "\n{ broken\n" + material("a2", false) + "\n");
+        write("b.ndjson", material("b0", false) + "\n{ \"schema\": \"material\" }\n");
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> load(true));
+        assertTrue(e.getMessage().contains("a.jsonl:2"), e.getMessage());
+
+        assertEquals(List.of("a0", "a2", "b0"), load(false));
+        List<String> sources = skippedSources();
+        assertEquals(2, sources.size(), sources.toString());
+        assertTrue(sources.get(0).endsWith("a.jsonl:2"), sources.toString());
+        assertTrue(sources.get(1).endsWith("b.ndjson:2"), sources.toString());
+    }
+
+    @Test
+    void invalidArrayElementIsNamedByIndex() throws Exception {
+        String invalid = "{ \"schema\": \"material\", \"id\": \"Bad Id\" }";
+        array("small.json", "s", 5, false, 2, invalid);
+        array("large.json", "l", 200, true, 150, invalid);
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+                () -> load(true));
+        assertTrue(e.getMessage().contains("large.json[150]"), e.getMessage());
+
+        List<String> expected = new ArrayList<>(ids("l", 200));
+        expected.remove("l150");
+        expected.addAll(List.of("s0", "s1", "s3", "s4"));
+        assertEquals(expected, load(false));
+        List<String> sources = skippedSources();
+        assertTrue(sources.get(0).endsWith("large.json[150]"), sources.toString());
+        assertTrue(sources.get(1).endsWith("small.json[2]"), sources.toString());
+    }
+
+    @Test
+    void syntaxErrorInStreamedArrayKeepsEarlierRecords() throws Exception {
+        array("large.json", "l", 200, true, 120, "{ \"id\": ");
+
+        assertThrows(IllegalArgumentException.class, () -> load(true));
+        assertEquals(ids("l", 120), load(false));
+        List<String> sources = skippedSources();
+        assertEquals(1, sources.size(), sources.toString());
+        assertTrue(sources.get(0).endsWith("large.json after record 120"), sources.toString());
+    }
+
+    @Test
+    void syntaxErrorInSmallArraySkipsTheFile() throws Exception {
+        array("small.json", "s", 5, false, 2, "{ \"id\": ");
+        write("t.json", material("t0", false));
+
+        assertThrows(IllegalArgumentException.class, () -> load(true));
+        assertEquals(List.of("t0"), load(false));
+    }
+}
@@ -0,0 +1,86 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OutputVerifierTest {
+
+    @TempDir
+    Path input;
+
+    @TempDir
+    Path output;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Metrics.startJob();
+        TestInputs.create(input);
+        TestInputs.writeMaterial(input, "oak_planks", "woodplank");
+        TestInputs.writeMaterial(input, "birch_planks", "woodplank");
+        TestInputs.writeMaterial(input, "iron_ingot", "metalingot");
+        assertEquals(0, TestInputs.generate(input, output));
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.endJob();
+    }
+
+    private OutputVerifier.Report compare() throws Exception {
+        return Generator.compareOutput(GeneratorConfig.fromArgs(new String[] {"--modid", "mod",
+                "--input", input.toString(), "--output", output.toString()}));
+    }
+
+    @Test
+    void freshOutputVerifiesClean() throws Exception {
+        OutputVerifier.Report report = compare();
+        assertTrue(report.clean(), report.toString());
+        // Four files per block, two per item, and the lang file.
+        assertEquals(11, report.checked());
+        assertEquals(0, TestInputs.generate(input, output, "--verify"));
+    }
+
+    @Test
+    void reportsEveryKindOfDifference() throws Exception {
+        Files.writeString(output.resolve("assets/mod/models/item/oak_planks.json"), "{}\n");
+        Files.delete(output.resolve("assets/mod/blockstates/birch_planks.json"));
+        TestInputs.writeMaterial(input, "glass", "glass");
+        Files.writeString(output.resolve("assets/mod/models/item/leftover.json"), "{}\n");
+
+        OutputVerifier.Report report = compare();
+        assertEquals(List.of("assets/mod/blockstates/glass.json",
+                "assets/mod/models/block/glass.json", "assets/mod/models/item/glass.json",
+                "assets/mod/textures/block/glass.png"), report.added());
+        // The lang file gains the new material's key.
+        assertEquals(List.of("assets/mod/lang/en_us.json",
+                "assets/mod/models/item/oak_planks.json"), report.changed());
+        assertEquals(List.of("assets/mod/blockstates/birch_planks.json"), report.missing());
+        assertEquals(List.of("assets/mod/models/item/leftover.json"), report.stale());
+
+        assertEquals(3, TestInputs.generate(input, output, "--verify"));
+        // Verifying writes nothing.
+        assertTrue(Files.exists(output.resolve("assets/mod/models/item/leftover.json")));
+        assertEquals("{}\n",
+                Files.readString(output.resolve("assets/mod/models/item/oak_planks.json")));
+    }
+
+    @Test
+    void removedMaterialShowsAsStale() throws Exception {
+        Files.delete(input.resolve("materials/iron_ingot.json"));
+
+        OutputVerifier.Report report = compare();
+        assertEquals(List.of("assets/mod/models/item/iron_ingot.json",
+                "assets/mod/textures/item/iron_ingot.png"), report.stale());
+        assertEquals(List.of("assets/mod/lang/en_us.json"), report.changed());
+        assertEquals(3, TestInputs.generate(input, output, "--verify"));
+    }
+}
@@ -0,0 +1,113 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PackArchiveTest {
+
+    @TempDir
+    Path dir;
+
+    @BeforeEach
+    void setUp() {
+        Metrics.startJob();
+    }
+
+    @AfterEach
+    void tearDown() {
+        Metrics.endJob();
+    }
+
+    private List<String> files() throws Exception {
+        try (Stream<Path> list = Files.list(dir)) {
+            return list.map(p -> p.getFileName().toString()).sorted().toList();
+        }
+    }
+
+    private static List<String> names(Path zip) throws Exception {
+        try (ZipFile zf = new ZipFile(zip.toFile())) {
+            return zf.stream().map(ZipEntry::getName).toList();
+        }
+    }
+
+    @Test
+    void entriesAreSortedAndTheLastPutWins() throws Exception {
+        Path zip = dir.resolve("pack.zip");
+        for (boolean store : new boolean[] {false, true}) {
+            try (PackArchive archive = new PackArchive(zip, store, 34, "test")) {
+                archive.put(Path.of("b/two.json"), "old".getBytes(StandardCharsets.UTF_8));
+                archive.put(Path.of("a/one.json"), new byte[100_000]);
+                archive.put(Path.of("b/two.json"), "new".getBytes(StandardCharsets.UTF_8));
+                archive.write();
+            }
+
+            assertEquals(List.of("a/one.json", "b/two.json", "pack.mcmeta"), names(zip));
+            try (ZipFile zf = new ZipFile(zip.toFile())) {
+                assertArrayEquals("new".getBytes(StandardCharsets.UTF_8),
+                        zf.getInputStream(zf.getEntry("b/two.json")).readAllBytes());
+                assertArrayEquals(new byte[100_000],
+                        zf.getInputStream(zf.getEntry("a/one.json")).readAllBytes());
+            }
+            // The spill file is gone.
+            assertEquals(List.of("pack.zip"), files());
+        }
+    }
+
+    @Test
+    void putOrderDoesNotChangeTheBytes() throws Exception {
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            order.add(i);
+        byte[][] archives = new byte[2][];
+        for (int run = 0; run < 2; run++) {
+            Collections.shuffle(order, new Random(run));
+            Path zip = dir.resolve("run" + run + ".zip");
+            try (PackArchive archive = new PackArchive(zip, false, 34, "test")) {
+                for (int i : order)
+                    archive.put(Path.of("assets", "f" + i + ".json"),
+                            ("{\"i\":" + i + "}\n").getBytes(StandardCharsets.UTF_8));
+                archive.write();
+            }
+            archives[run] = Files.readAllBytes(zip);
+        }
+        assertArrayEquals(archives[0], archives[1]);
+    }
+
+    @Test
+    void twoRunsOverTheSameInputGiveIdenticalArchives() throws Exception {
+        Path input = dir.resolve("input");
+        TestInputs.create(input);
+        for (String id : List.of("oak_planks", "birch_planks", "acacia_planks", "cherry_planks"))
+            TestInputs.writeMaterial(input, id, "woodplank");
+        TestInputs.writeMaterial(input, "iron_ingot", "metalingot");
+        TestInputs.writeMaterial(input, "glass", "glass");
+
+        Path first = dir.resolve("first.zip");
+        Path second = dir.resolve("second.zip");
+        assertEquals(0, TestInputs.generate(input, dir.resolve("unused"), "--archive",
+                first.toString(), "--threads", "1"));
+        assertEquals(0, TestInputs.generate(input, dir.resolve("unused"), "--archive",
+                second.toString(), "--threads", "4"));
+
+        assertEquals(-1, Files.mismatch(first, second));
+        assertEquals(List.of("first.zip", "input", "second.zip"), files());
+        // Four files per block, two for the item, the lang file and pack.mcmeta.
+        assertEquals(5 * 4 + 2 + 1 + 1, names(first).size());
+    }
+}
@@ -0,0 +1,110 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class PaletteMapTest {
+
+    private static final Path SCHEMAS = Path.of("src/main/resources/schemas");
+
+    @TempDir
+    Path input;
+
+    @BeforeEach
+    void copySchemas() throws Exception {
+        Path schemas = Files.createDirectories(input.resolve("schemas"));
+        for (String name : new String[] {"common.schema.json", "palette-map.schema.json"})
+            Files.copy(SCHEMAS.resolve(name), schemas.resolve(name));
+        Files.createDirectories(input.resolve("palettes"));
+    }
+
+    private void palette(String file, String json) throws Exception {
+        Files.writeString(input.resolve("palettes").resolve(file), json);
+    }
+
+    private Map<String, PaletteMap> load(boolean strict) throws Exception {
+        return PaletteMap.loadAll(input, new SchemaValidator(input.resolve("schemas"), strict));
+    }
+
+    private static int[] apply(PaletteMap palette, int... argb) {
+        int[] out = new int[argb.length];
+        palette.apply(argb, out, argb.length);
+        return out;
+    }
+
+    @Test
+    void mapsExactColorsAndKeepsAlpha() throws Exception {
+        palette("rust.json", """
+                { "schema": "palette-map", "id": "rust",
+                  "map": [ ["aabbcc", "112233"], ["000000", "ffffff"] ] }
+                """);
+        PaletteMap rust = load(true).get("rust");
+
+        assertArrayEquals(new int[] {0xFF112233, 0x80112233, 0x00FFFFFF, 0xFF123456},
+                apply(rust, 0xFFAABBCC, 0x80AABBCC, 0x00000000, 0xFF123456));
+    }
+
+    @Test
+    void postAdjustmentsApplyToMappedAndUnmappedColors() throws Exception {
+        palette("bright.json", """
+                { "schema": "palette-map", "id": "bright",
+                  "map": [ ["101010", "202020"] ], "post": { "brightness": 0.1 } }
+                """);
+        PaletteMap bright = load(true).get("bright");
+
+        // round(0.1 * 255) = 26 is added to every channel, clamped at 255.
+        assertArrayEquals(new int[] {0xFF3A3A3A, 0xFF1A1A1A, 0xFFFFFFFF},
+                apply(bright, 0xFF101010, 0xFF000000, 0xFFF0F0F0));
+    }
+
+    @Test
+    void zeroSaturationTurnsUnmappedColorsGray() throws Exception {
+        palette("gray.json", """
+                { "schema": "palette-map", "id": "gray",
+                  "map": [ ["ff0000", "ff0000"] ], "post": { "saturation": 0 } }
+                """);
+        int[] out = apply(load(true).get("gray"), 0xFF00FF00);
+        int r = (out[0] >>> 16) & 0xFF;
+        int g = (out[0] >>> 8) & 0xFF;
+        int b = out[0] & 0xFF;
+        assertEquals(r, g);
+        assertEquals(g, b);
+    }
+
+    @Test
+    void hashFollowsFileContent() throws Exception {
+        palette("a.json", """
+                { "schema": "palette-map", "id": "a", "map": [ ["aabbcc", "112233"] ] }
+                """);
+        palette("b.json", """
+                { "schema": "palette-map", "id": "b", "map": [ ["aabbcc", "112234"] ] }
+                """);
+        Map<String, PaletteMap> palettes = load(true);
+        assertNotEquals(palettes.get("a").hash(), palettes.get("b").hash());
+        assertEquals(40, palettes.get("a").hash().length());
+    }
+
+    @Test
+    void invalidFileIsSkippedOrRejectedByStrictness() throws Exception {
+        palette("good.json", """
+                { "schema": "palette-map", "id": "good", "map": [ ["aabbcc", "112233"] ] }
+                """);
+        palette("bad.json", """
+                { "schema": "palette-map", "id": "bad", "map": [ ["not-a-color", "112233"] ] }
+                """);
+
+        assertEquals(Set.of("good"), load(false).keySet());
+        assertThrows(IllegalArgumentException.class, () -> load(true));
+    }
+}
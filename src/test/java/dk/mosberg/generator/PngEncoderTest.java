@@ -0,0 +1,81 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+class PngEncoderTest {
+
+    private static final int SIZE = 32;
+
+    /** Decodes with ImageIO, which knows nothing about how the encoder picked its format. */
+    private static int[] decode(byte[] png) throws Exception {
+        BufferedImage image = ImageIO.read(new ByteArrayInputStream(png));
+        assertEquals(SIZE, image.getWidth());
+        assertEquals(SIZE, image.getHeight());
+        return image.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE);
+    }
+
+    private static void assertRoundTrips(int[] argb, PngEncoder.Filter filter, int level)
+            throws Exception {
+        PngEncoder encoder = new PngEncoder(level, filter);
+        byte[] png = encoder.encode(SIZE, SIZE, argb);
+        assertArrayEquals(argb, decode(png));
+        assertArrayEquals(png, encoder.encode(SIZE, SIZE, argb.clone()));
+    }
+
+    private static int[] pixels(int colors, boolean alpha, long seed) {
+        Random random = new Random(seed);
+        int[] palette = new int[colors];
+        for (int i = 0; i < colors; i++) {
+            int a = alpha ? (i % 3 == 0 ? 0 : i % 3 == 1 ? 0x80 : 0xFF) : 0xFF;
+            // Fully transparent pixels still keep their color; the encoder must not drop it.
+            palette[i] = a << 24 | (random.nextInt() & 0xFFFFFF);
+        }
+        int[] argb = new int[SIZE * SIZE];
+        for (int i = 0; i < argb.length; i++)
+            argb[i] = palette[colors >= argb.length ? i : random.nextInt(colors)];
+        return argb;
+    }
+
+    @ParameterizedTest
+    @EnumSource(PngEncoder.Filter.class)
+    void indexedImagesRoundTrip(PngEncoder.Filter filter) throws Exception {
+        // 2, 4, 16 and 256 colors cover every indexed bit depth.
+        for (int colors : new int[] {1, 2, 4, 16, 256}) {
+            assertRoundTrips(pixels(colors, false, colors), filter, 9);
+            assertRoundTrips(pixels(colors, true, colors), filter, 9);
+        }
+    }
+
+    @ParameterizedTest
+    @EnumSource(PngEncoder.Filter.class)
+    void truecolorImagesRoundTrip(PngEncoder.Filter filter) throws Exception {
+        int[] gradient = new int[SIZE * SIZE];
+        for (int y = 0; y < SIZE; y++)
+            for (int x = 0; x < SIZE; x++)
+                gradient[y * SIZE + x] = 0xFF000000 | x * 8 << 16 | y * 8 << 8 | (x ^ y) * 8;
+
+        for (int level : new int[] {0, 1, 9}) {
+            assertRoundTrips(pixels(SIZE * SIZE, false, level), filter, level);
+            assertRoundTrips(pixels(SIZE * SIZE, true, level), filter, level);
+            assertRoundTrips(gradient, filter, level);
+        }
+    }
+
+    @Test
+    void rejectsBadLevel() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new PngEncoder(10, PngEncoder.Filter.NONE));
+    }
+}
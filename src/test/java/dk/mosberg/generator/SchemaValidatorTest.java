@@ -0,0 +1,122 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SchemaValidatorTest {
+
+    @TempDir
+    Path schemas;
+
+    private SchemaValidator validator;
+
+    @BeforeEach
+    void setUp() {
+        validator = new SchemaValidator(schemas, true);
+    }
+
+    private Path schema(String name, String json) throws Exception {
+        return Files.writeString(schemas.resolve(name), json);
+    }
+
+    private List<String> errors(String instance, Path schema) {
+        JsonElement json = JsonParser.parseString(instance);
+        return validator.validate(json, schema).stream().map(ValidationError::pointer).toList();
+    }
+
+    @Test
+    void collectsEveryViolationWithItsPointer() throws Exception {
+        Path item = schema("item.schema.json", """
+                { "type": "object", "required": ["id", "count"],
+                  "properties": {
+                    "id": { "type": "string", "pattern": "^[a-z_]+$" },
+                    "count": { "type": "integer", "minimum": 1, "maximum": 64 },
+                    "tags": { "type": "array", "items": { "type": "string" } }
+                  },
+                  "additionalProperties": false }
+                """);
+
+        assertEquals(List.of(), errors("""
+                { "id": "oak", "count": 3, "tags": ["a"] }
+                """, item));
+        List<ValidationError> all = validator.validate(JsonParser.parseString("""
+                { "id": "Oak!", "count": 100, "tags": ["a", 1, "b", false], "extra": 1 }
+                """), item);
+        List<String> pointers = all.stream().map(ValidationError::pointer).toList();
+        assertEquals(5, all.size(), all.toString());
+        // An unexpected property is reported on its object, naming the property.
+        assertTrue(pointers.containsAll(List.of("/id", "/count", "/tags/1", "/tags/3", "")),
+                all.toString());
+        assertTrue(all.stream().anyMatch(e -> e.pointer().isEmpty()
+                && e.message().contains("extra")), all.toString());
+        assertEquals(List.of(""), errors("""
+                { "id": "oak" }
+                """, item));
+    }
+
+    @Test
+    void recursiveRefValidatesEveryLevel() throws Exception {
+        Path tree = schema("tree.schema.json", """
+                { "type": "object", "required": ["name"],
+                  "properties": {
+                    "name": { "type": "string" },
+                    "children": { "type": "array", "items": { "$ref": "#" } }
+                  } }
+                """);
+
+        assertEquals(List.of(), errors("""
+                { "name": "root", "children": [ { "name": "a", "children": [ { "name": "b" } ] } ] }
+                """, tree));
+        assertEquals(List.of("/children/0/children/1/name", "/children/1"), errors("""
+                { "name": "root", "children": [
+                  { "name": "a", "children": [ { "name": "b" }, { "name": 7 } ] },
+                  { "children": [] } ] }
+                """, tree));
+    }
+
+    @Test
+    void refsResolveAcrossFilesAndDefs() throws Exception {
+        schema("common.schema.json", """
+                { "$defs": { "id": { "type": "string", "pattern": "^[a-z]+$" },
+                             "node": { "type": "object",
+                                       "properties": { "next": { "$ref": "#/$defs/node" },
+                                                       "id": { "$ref": "#/$defs/id" } } } } }
+                """);
+        Path list = schema("list.schema.json", """
+                { "$ref": "common.schema.json#/$defs/node" }
+                """);
+
+        assertEquals(List.of("/next/next/id"), errors("""
+                { "id": "a", "next": { "id": "b", "next": { "id": "C" } } }
+                """, list));
+    }
+
+    @Test
+    void badRefPointerFailsEveryTimeItIsUsed() throws Exception {
+        schema("common.schema.json", """
+                { "$defs": { "id": { "type": "string" } } }
+                """);
+        Path first = schema("first.schema.json", """
+                { "properties": { "a": { "$ref": "common.schema.json#/$defs/missing" } } }
+                """);
+        Path second = schema("second.schema.json", """
+                { "properties": { "b": { "$ref": "common.schema.json#/$defs/missing" } } }
+                """);
+
+        assertThrows(IllegalArgumentException.class, () -> errors("{}", first));
+        // The failed compile must not leave a placeholder the next schema picks up.
+        assertThrows(IllegalArgumentException.class, () -> errors("{}", second));
+    }
+}
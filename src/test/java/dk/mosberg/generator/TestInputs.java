@@ -0,0 +1,56 @@
+package dk.mosberg.generator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Input trees for tests that run the whole generator: the bundled schemas, rules, ramps and
+ * textures from src/main/resources, plus whatever materials a test writes.
+ */
+public final class TestInputs {
+
+    private static final Path RESOURCES = Path.of("src/main/resources");
+
+    private TestInputs() {}
+
+    /** Copies the bundled input tree to {@code input} and creates an empty materials dir. */
+    public static Path create(Path input) throws IOException {
+        List<Path> files;
+        try (Stream<Path> walk = Files.walk(RESOURCES)) {
+            files = walk.filter(Files::isRegularFile).toList();
+        }
+        for (Path f : files) {
+            Path to = input.resolve(RESOURCES.relativize(f).toString());
+            Files.createDirectories(to.getParent());
+            Files.copy(f, to, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return Files.createDirectories(input.resolve("materials"));
+    }
+
+    /**
+     * The JSON of a material using its category's bundled texture, e.g. ("oak_planks",
+     * "woodplank").
+     */
+    public static String material(String id, String category) {
+        return "{ \"schema\": \"material\", \"id\": \"" + id + "\", \"name\": \""
+                + id.replace('_', ' ') + "\", \"category\": \"" + category
+                + "\", \"palette\": \"base_" + category + "\" }";
+    }
+
+    /** Writes {@link #material} to {@code materials/<id>.json}. */
+    public static void writeMaterial(Path input, String id, String category) throws IOException {
+        Files.writeString(input.resolve("materials").resolve(id + ".json"),
+                material(id, category) + "\n");
+    }
+
+    /** Runs the generator in this JVM and returns its exit code. */
+    public static int generate(Path input, Path output, String... options) {
+        String[] args = Stream.concat(Stream.of("--modid", "mod", "--input", input.toString(),
+                "--output", output.toString()), Stream.of(options)).toArray(String[]::new);
+        return Generator.execute(args);
+    }
+}
@@ -0,0 +1,69 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+import java.awt.Color;
+import java.awt.image.BufferedImage;
+
+import org.junit.jupiter.api.Test;
+
+class TextureRecolorerTest {
+
+    // Alternating tints also checks that the per-thread tables are swapped, not reused.
+    private static final int[] TINTS = {0xFFFFFF, 0x000000, 0x8A3FD1, 0x8A3FD1, 0x01FE80, 0xFF0000,
+            0x8A3FD1};
+
+    /** Every r and g value, with b and alpha sweeping through all values as well. */
+    private static BufferedImage allChannels(int type) {
+        BufferedImage image = new BufferedImage(256, 256, type);
+        for (int y = 0; y < 256; y++) {
+            for (int x = 0; x < 256; x++)
+                image.setRGB(x, y, ((x ^ y) << 24) | (x << 16) | (y << 8) | ((x + y) & 0xFF));
+        }
+        return image;
+    }
+
+    /** The original per-pixel getRGB/setRGB implementation. */
+    private static BufferedImage oldMultiply(BufferedImage base, Color tint) {
+        BufferedImage result = new BufferedImage(base.getWidth(), base.getHeight(),
+                BufferedImage.TYPE_INT_ARGB);
+        for (int y = 0; y < base.getHeight(); y++) {
+            for (int x = 0; x < base.getWidth(); x++) {
+                int argb = base.getRGB(x, y);
+                int nr = (((argb >>> 16) & 0xFF) * tint.getRed()) / 255;
+                int ng = (((argb >>> 8) & 0xFF) * tint.getGreen()) / 255;
+                int nb = ((argb & 0xFF) * tint.getBlue()) / 255;
+                result.setRGB(x, y, (argb & 0xFF000000) | (nr << 16) | (ng << 8) | nb);
+            }
+        }
+        return result;
+    }
+
+    private static int[] pixels(BufferedImage image) {
+        return image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0,
+                image.getWidth());
+    }
+
+    private static void assertMatchesOldFormula(BufferedImage base) {
+        for (int tint : TINTS) {
+            Color color = new Color(tint);
+            assertArrayEquals(pixels(oldMultiply(base, color)),
+                    pixels(TextureRecolorer.recolorMultiply(base, color)),
+                    String.format("tint %06X on type %d", tint, base.getType()));
+        }
+    }
+
+    @Test
+    void intArgbMatchesOldFormula() {
+        assertMatchesOldFormula(allChannels(BufferedImage.TYPE_INT_ARGB));
+    }
+
+    @Test
+    void otherImageTypesMatchOldFormula() {
+        assertMatchesOldFormula(allChannels(BufferedImage.TYPE_4BYTE_ABGR));
+        assertMatchesOldFormula(allChannels(BufferedImage.TYPE_INT_RGB));
+        // A sub-image shares a larger buffer, so it also takes the scratch path.
+        assertMatchesOldFormula(allChannels(BufferedImage.TYPE_INT_ARGB)
+                .getSubimage(16, 32, 200, 100));
+    }
+}
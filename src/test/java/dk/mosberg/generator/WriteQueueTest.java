@@ -0,0 +1,74 @@
+package dk.mosberg.generator;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+class WriteQueueTest {
+
+    private static final int WRITES = 100;
+
+    @Test
+    void awaitWaitsForEveryPendingWrite() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger written = new AtomicInteger();
+        try (WriteQueue queue = new WriteQueue(4, false)) {
+            for (int i = 0; i < WRITES; i++) {
+                queue.submit(Path.of("out", "file" + i + ".json"), () -> {
+                    release.await();
+                    written.incrementAndGet();
+                });
+            }
+
+            CompletableFuture<Void> awaited = CompletableFuture.runAsync(() -> {
+                try {
+                    queue.await();
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            Thread.sleep(100);
+            assertFalse(awaited.isDone());
+
+            release.countDown();
+            awaited.get(10, TimeUnit.SECONDS);
+            assertEquals(WRITES, written.get());
+        }
+    }
+
+    @Test
+    void firstWorkerFailureSurfacesFromAwait() throws Exception {
+        IOException first = new IOException("disk full");
+        Path file = Path.of("out", "model.json");
+        CountDownLatch submitted = new CountDownLatch(1);
+        try (WriteQueue queue = new WriteQueue(2, true)) {
+            // Same key, so both run on one worker in this order.
+            queue.submit(file, () -> {
+                submitted.await();
+                throw first;
+            });
+            queue.submit(file, () -> {
+                throw new IOException("second");
+            });
+            submitted.countDown();
+
+            IOException thrown = assertThrows(IOException.class, queue::await);
+            assertEquals("File write failed: disk full", thrown.getMessage());
+            assertSame(first, thrown.getCause());
+
+            IOException again = assertThrows(IOException.class,
+                    () -> queue.submit(file, () -> {}));
+            assertSame(first, again.getCause());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package dk.mosberg.generator.gradle;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import dk.mosberg.generator.TestInputs;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.gradle.testkit.runner.BuildResult;
+import org.gradle.testkit.runner.GradleRunner;
+import org.gradle.testkit.runner.TaskOutcome;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Runs {@link GenerateAssets} in a TestKit build. The build's test task passes the compiled task
+ * classes and the generator classpath in as system properties.
+ */
+class GenerateAssetsTest {
+
+    @TempDir
+    Path project;
+
+    private Path input;
+
+    private static String groovyFiles(String property) {
+        StringBuilder out = new StringBuilder();
+        for (String path : System.getProperty(property).split(File.pathSeparator)) {
+            if (!out.isEmpty())
+                out.append(", ");
+            out.append("'").append(path.replace("\\", "/")).append("'");
+        }
+        return "files(" + out + ")";
+    }
+
+    @BeforeEach
+    void setUp() throws Exception {
+        input = project.resolve("in");
+        TestInputs.create(input);
+        TestInputs.writeMaterial(input, "oak_planks", "woodplank");
+        TestInputs.writeMaterial(input, "birch_planks", "woodplank");
+        TestInputs.writeMaterial(input, "iron_ingot", "metalingot");
+
+        Files.writeString(project.resolve("settings.gradle"), "rootProject.name = 'fixture'\n");
+        Files.writeString(project.resolve("build.gradle"), """
+                buildscript {
+                    dependencies { classpath %s }
+                }
+                tasks.register('generate', dk.mosberg.generator.gradle.GenerateAssets) {
+                    modId = 'mod'
+                    lang = 'en_us'
+                    inputDir = layout.projectDirectory.dir('in')
+                    outputDir = layout.projectDirectory.dir('out')
+                    generatorClasspath.from(%s)
+                }
+                """.formatted(groovyFiles("generator.taskClasses"),
+                groovyFiles("generator.classpath")));
+    }
+
+    private BuildResult generate(String... extra) {
+        List<String> args = new ArrayList<>(List.of("generate", "--info"));
+        args.addAll(List.of(extra));
+        return GradleRunner.create().withProjectDir(project.toFile()).withArguments(args).build();
+    }
+
+    private static TaskOutcome outcome(BuildResult result) {
+        return result.task(":generate").getOutcome();
+    }
+
+    private List<String> changedList() throws Exception {
+        return Files.readAllLines(project.resolve("build/tmp/generate/changed.txt"));
+    }
+
+    @Test
+    void unchangedBuildIsUpToDateAndEditsPassOnlyTheChangedFile() throws Exception {
+        BuildResult first = generate();
+        assertEquals(TaskOutcome.SUCCESS, outcome(first));
+        assertTrue(first.getOutput().contains("3 generated, 0 up-to-date"), first.getOutput());
+        assertTrue(Files.exists(project.resolve("out/assets/mod/models/item/iron_ingot.json")));
+
+        assertEquals(TaskOutcome.UP_TO_DATE, outcome(generate()));
+
+        Path texture = input.resolve("textures/material/woodplank/oak_planks.png");
+        Files.copy(input.resolve("textures/material/woodplank/birch_planks.png"), texture,
+                StandardCopyOption.REPLACE_EXISTING);
+        BuildResult edited = generate();
+        assertEquals(TaskOutcome.SUCCESS, outcome(edited));
+        assertEquals(List.of("textures/material/woodplank/oak_planks.png"), changedList());
+        assertTrue(edited.getOutput().contains("1 generated, 2 up-to-date"), edited.getOutput());
+    }
+
+    @Test
+    void nonIncrementalRunDoesNotForceFull() throws Exception {
+        assertEquals(TaskOutcome.SUCCESS, outcome(generate()));
+
+        // --rerun-tasks runs the task without history, as a cache miss or a classpath change does.
+        BuildResult rerun = generate("--rerun-tasks");
+        assertEquals(TaskOutcome.SUCCESS, outcome(rerun));
+        assertFalse(rerun.getOutput().contains("Incremental generation"), rerun.getOutput());
+        assertTrue(rerun.getOutput().contains("Full:   false"), rerun.getOutput());
+    }
+}